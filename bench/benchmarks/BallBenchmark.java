@@ -0,0 +1,58 @@
+package benchmarks;
+
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.GameEnvironment;
+import game.objects.Ball;
+import game.objects.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Ball.moveOneStep for a ball bouncing inside a closed box of walls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BallBenchmark {
+    private Ball ball;
+
+    /**
+     * Builds the walls and the ball.
+     */
+    @Setup
+    public void setUp() {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 580), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 20, 600), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(780, 0), 20, 600), Color.GRAY));
+        ball = new Ball(new Point(400, 300), 5, Color.GRAY);
+        ball.setVelocity(3, 2);
+        ball.setGameEnvironment(environment);
+    }
+
+    /**
+     * One step of the ball.
+     * @return the ball
+     */
+    @Benchmark
+    public Ball moveOneStep() {
+        ball.moveOneStep();
+        return ball;
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.GameEnvironment;
+import game.objects.BallSystem;
+import game.objects.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks stepping a BallSystem of many balls bouncing inside a closed box of walls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BallSystemBenchmark {
+    @Param({"1000", "100000"})
+    private int balls;
+
+    private BallSystem system;
+
+    /**
+     * Builds the walls and the balls.
+     */
+    @Setup
+    public void setUp() {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 580), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 20, 600), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(780, 0), 20, 600), Color.GRAY));
+        system = new BallSystem(balls);
+        system.setGameEnvironment(environment);
+        Random rand = new Random(1);
+        for (int i = 0; i < balls; i++) {
+            double angle = rand.nextDouble() * Math.PI * 2;
+            system.add(30 + rand.nextDouble() * 740, 30 + rand.nextDouble() * 540, 5, Color.GRAY)
+                    .setVelocity(3 * Math.cos(angle), 3 * Math.sin(angle));
+        }
+    }
+
+    /**
+     * One step of every ball.
+     * @return the system
+     */
+    @Benchmark
+    public BallSystem step() {
+        system.timePassed();
+        return system;
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import Geomtry.Line;
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.GameEnvironment;
+import game.collision.CollisionInfo;
+import game.objects.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks GameEnvironment.getClosestCollision against growing numbers of blocks.
+ * The blocks are laid out on a 50x20 grid like the one in Game.initialize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    private static final int TRAJECTORIES = 1024;
+
+    @Param({"100", "10000", "1000000"})
+    private int collidables;
+
+    private GameEnvironment environment;
+    private Line[] trajectories;
+    private int next;
+
+    /**
+     * Fills the environment and precomputes short, ball-like trajectories.
+     */
+    @Setup
+    public void setUp() {
+        environment = new GameEnvironment();
+        int columns = (int) Math.ceil(Math.sqrt(collidables * 2.5));
+        for (int i = 0; i < collidables; i++) {
+            int x = 20 + (i % columns) * 50;
+            int y = 60 + (i / columns) * 20;
+            environment.addCollidable(new Block(new Rectangle(new Point(x, y), 50, 20), Color.BLUE));
+        }
+        double width = columns * 50;
+        double height = (collidables / columns + 1) * 20;
+        Random rand = new Random(42);
+        trajectories = new Line[TRAJECTORIES];
+        for (int i = 0; i < TRAJECTORIES; i++) {
+            double x = 20 + rand.nextDouble() * width;
+            double y = 60 + rand.nextDouble() * height;
+            double angle = rand.nextDouble() * Math.PI * 2;
+            trajectories[i] = new Line(x, y, x + 4 * Math.cos(angle), y + 4 * Math.sin(angle));
+        }
+    }
+
+    /**
+     * One closest-collision query.
+     * @return the collision info
+     */
+    @Benchmark
+    public CollisionInfo getClosestCollision() {
+        next = (next + 1) & (TRAJECTORIES - 1);
+        return environment.getClosestCollision(trajectories[next]);
+    }
+
+    /**
+     * One closest-collision query for a ball of radius 5, the radius the game uses.
+     * @return the collision info
+     */
+    @Benchmark
+    public CollisionInfo getClosestCollisionSwept() {
+        next = (next + 1) & (TRAJECTORIES - 1);
+        return environment.getClosestCollision(trajectories[next], 5);
+    }
+}
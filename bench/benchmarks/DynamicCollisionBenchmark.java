@@ -0,0 +1,110 @@
+package benchmarks;
+
+import Geomtry.Line;
+import Geomtry.Rectangle;
+import game.GameEnvironment;
+import game.collision.Collidable;
+import game.collision.CollisionInfo;
+import game.objects.Ball;
+import game.objects.Velocity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks moving collidables: every operation moves all of them a little, like paddles
+ * sliding each frame, and then runs one collision query among them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicCollisionBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int movers;
+
+    private GameEnvironment environment;
+    private Mover[] all;
+    private Line trajectory;
+
+    /**
+     * Scatters the moving collidables.
+     */
+    @Setup
+    public void setUp() {
+        environment = new GameEnvironment();
+        Random rand = new Random(7);
+        all = new Mover[movers];
+        for (int i = 0; i < movers; i++) {
+            all[i] = new Mover(new Rectangle(rand.nextDouble() * 4000, rand.nextDouble() * 4000, 40, 5),
+                    rand.nextBoolean() ? 3 : -3);
+            environment.addDynamicCollidable(all[i]);
+        }
+        trajectory = new Line(2000, 2000, 2004, 2004);
+    }
+
+    /**
+     * Moves every collidable and runs one query.
+     * @return the collision info
+     */
+    @Benchmark
+    public CollisionInfo moveAllAndQuery() {
+        for (Mover m : all) {
+            m.step();
+            environment.updateCollidable(m);
+        }
+        return environment.getClosestCollision(trajectory);
+    }
+
+    /**
+     * A collidable that slides back and forth.
+     */
+    private static final class Mover implements Collidable {
+        private Rectangle rect;
+        private double speed;
+        private int ticks;
+
+        /**
+         * Constructor.
+         * @param rect the starting rectangle
+         * @param speed the horizontal speed
+         */
+        Mover(Rectangle rect, double speed) {
+            this.rect = rect;
+            this.speed = speed;
+        }
+
+        /**
+         * Moves one step, turning around every 100 steps.
+         */
+        void step() {
+            if (++ticks % 100 == 0) {
+                speed = -speed;
+            }
+            rect = new Rectangle(rect.getMinX() + speed, rect.getMinY(), rect.getWidth(), rect.getHeight());
+        }
+
+        @Override
+        public Rectangle getCollisionRectangle() {
+            return rect;
+        }
+
+        @Override
+        public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
+            return currentVelocity;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import game.Game;
+import game.display.HeadlessDisplay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares moving the balls every tick with moving them through the impact scheduler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EngineBenchmark {
+    @Param({"tick", "event"})
+    private String engine;
+
+    @Param({"2", "200", "2000"})
+    private int balls;
+
+    private Game game;
+
+    /**
+     * Creates a fresh headless game with the given engine and number of balls.
+     */
+    @Setup
+    public void setUp() {
+        game = new Game(new HeadlessDisplay(800, 600));
+        game.setBallCount(balls);
+        game.setEventDriven(engine.equals("event"));
+        game.initialize();
+    }
+
+    /**
+     * One simulation tick, without drawing. A finished game is replaced by a new one.
+     * @return the game
+     */
+    @Benchmark
+    public Game tick() {
+        if (game.isOver()) {
+            setUp();
+        }
+        game.step(1);
+        return game;
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import game.Game;
+import game.display.HeadlessDisplay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one full headless frame of the game: drawing and one simulation tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmark {
+    private Game game;
+
+    /**
+     * Creates a fresh headless game.
+     */
+    @Setup
+    public void setUp() {
+        game = new Game(new HeadlessDisplay(800, 600));
+        game.initialize();
+    }
+
+    /**
+     * One frame. A finished game is replaced by a new one, which happens rarely enough
+     * not to show in the average.
+     * @return the game
+     */
+    @Benchmark
+    public Game frame() {
+        if (game.isOver()) {
+            setUp();
+        }
+        game.drawFrame();
+        game.step(1);
+        return game;
+    }
+}
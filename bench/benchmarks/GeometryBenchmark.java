@@ -0,0 +1,81 @@
+package benchmarks;
+
+import Geomtry.Line;
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the geometry primitives used by every collision query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+    private Line diagonal;
+    private Line crossing;
+    private Line missing;
+    private Rectangle rect;
+
+    /**
+     * Creates the lines and the rectangle.
+     */
+    @Setup
+    public void setUp() {
+        diagonal = new Line(new Point(0, 0), new Point(100, 80));
+        crossing = new Line(new Point(0, 80), new Point(100, 0));
+        missing = new Line(new Point(0, 200), new Point(100, 300));
+        rect = new Rectangle(new Point(40, 30), 50, 20);
+    }
+
+    /**
+     * Two segments that intersect.
+     * @return the intersection point
+     */
+    @Benchmark
+    public Point lineIntersectionWith() {
+        return diagonal.intersectionWith(crossing);
+    }
+
+    /**
+     * A segment that crosses two edges of a rectangle.
+     * @return the intersection points
+     */
+    @Benchmark
+    public List<Point> rectangleIntersectionPoints() {
+        return rect.intersectionPoints(diagonal);
+    }
+
+    /**
+     * The closest intersection of a segment that hits the rectangle.
+     * @return the closest point
+     */
+    @Benchmark
+    public Point closestIntersectionHit() {
+        return diagonal.closestIntersectionToStartOfLine(rect);
+    }
+
+    /**
+     * The closest intersection of a segment that misses the rectangle.
+     * @return null
+     */
+    @Benchmark
+    public Point closestIntersectionMiss() {
+        return missing.closestIntersectionToStartOfLine(rect);
+    }
+}
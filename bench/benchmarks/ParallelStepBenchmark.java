@@ -0,0 +1,95 @@
+package benchmarks;
+
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.GameEnvironment;
+import game.objects.BallSystem;
+import game.objects.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the parallel ball step scales with the number of threads.
+ * Threads 0 is the one-after-another step, for comparison.
+ * The balls bounce in a closed box with a field of blocks that have no listeners, so nothing is removed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParallelStepBenchmark {
+    @Param({"0", "1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    @Param({"10000", "100000"})
+    private int balls;
+
+    private BallSystem system;
+    private ForkJoinPool pool;
+
+    /**
+     * Builds the walls, the blocks and the balls.
+     */
+    @Setup
+    public void setUp() {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 580), 800, 20), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 20, 600), Color.GRAY));
+        environment.addCollidable(new Block(new Rectangle(new Point(780, 0), 20, 600), Color.GRAY));
+        for (int x = 20; x < 780; x += 50) {
+            for (int y = 60; y < 300; y += 20) {
+                environment.addCollidable(new Block(new Rectangle(new Point(x, y), 50, 20), Color.BLUE));
+            }
+        }
+        system = new BallSystem(balls);
+        system.setGameEnvironment(environment);
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            system.setPool(pool);
+        }
+        Random rand = new Random(1);
+        for (int i = 0; i < balls; i++) {
+            double angle = rand.nextDouble() * Math.PI * 2;
+            system.add(30 + rand.nextDouble() * 740, 310 + rand.nextDouble() * 260, 5, Color.GRAY)
+                    .setVelocity(4 * Math.cos(angle), 4 * Math.sin(angle));
+        }
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One step of every ball.
+     * @return the system
+     */
+    @Benchmark
+    public BallSystem step() {
+        system.timePassed();
+        return system;
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.display.DirtyRectRenderer;
+import game.display.ImageDrawSurface;
+import game.display.RenderCommandList;
+import game.display.TileRasterizer;
+import game.objects.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares drawing a block-heavy frame with Java2D into an image against the software tile rasterizer.
+ * The frame is a screen full of blocks of the given width, half as high, with their outlines,
+ * and 200 balls on top. Threads 0 draws the tiles one after another; Java2D ignores it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RasterBenchmark {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    @Param({"java2d", "software"})
+    private String backend;
+
+    @Param({"0", "4"})
+    private int threads;
+
+    @Param({"50", "20", "10"})
+    private int blockWidth;
+
+    private RenderCommandList frame;
+    private ImageDrawSurface java2d;
+    private TileRasterizer software;
+    private ForkJoinPool pool;
+
+    /**
+     * Records the frame and makes the surfaces.
+     */
+    @Setup
+    public void setUp() {
+        frame = new RenderCommandList(WIDTH, HEIGHT);
+        Color[] colors = {Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW};
+        Random rand = new Random(1);
+        for (int x = 0; x + blockWidth <= WIDTH; x += blockWidth) {
+            for (int y = 0; y + blockWidth / 2 <= HEIGHT; y += blockWidth / 2) {
+                new Block(new Rectangle(new Point(x, y), blockWidth, blockWidth / 2), colors[rand.nextInt(4)])
+                        .drawOn(frame);
+            }
+        }
+        frame.setColor(Color.WHITE);
+        for (int i = 0; i < 200; i++) {
+            frame.fillCircle(rand.nextInt(WIDTH), rand.nextInt(HEIGHT), 5);
+        }
+        java2d = new ImageDrawSurface(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB));
+        software = new TileRasterizer(new int[WIDTH * HEIGHT], WIDTH, HEIGHT);
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            software.setPool(pool);
+        }
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        java2d.dispose();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Draws the frame once with the chosen backend.
+     * @return the recorded frame
+     */
+    @Benchmark
+    public RenderCommandList draw() {
+        if (backend.equals("software")) {
+            software.draw(frame);
+        } else {
+            java2d.setColor(DirtyRectRenderer.DEFAULT_BACKGROUND);
+            java2d.fillRectangle(0, 0, WIDTH, HEIGHT);
+            frame.replay(java2d);
+        }
+        return frame;
+    }
+}
@@ -1,17 +1,251 @@
 import game.Game;
+import game.collision.UniformGrid;
+import game.display.FrameExporter;
+import game.display.HeadlessDisplay;
+import game.display.SoftwareDisplay;
+import game.metrics.AllocationMeter;
+import game.metrics.GameMetrics;
+import game.metrics.JankMonitor;
+import game.metrics.MetricsServer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * This is the main class for the game.
  * It initializes and runs the game.
  */
 public class Ass5Game {
+    /**
+     * The number of frames per second of game time recorded by --record.
+     */
+    private static final double RECORD_FRAME_RATE = 60;
+    /**
+     * The system property naming the directory the frame profile is dumped to while playing.
+     */
+    private static final String PROFILE_PROPERTY = "pong.profile";
+    /**
+     * The time between two dumps of the frame profile, in nanoseconds.
+     */
+    private static final long PROFILE_DUMP_NANOS = 5_000_000_000L;
+    /**
+     * The system property giving the frame budget, in milliseconds, past which a frame is logged as jank.
+     */
+    private static final String JANK_PROPERTY = "pong.jank";
+    /**
+     * The number of frame durations the jank monitor keeps.
+     */
+    private static final int JANK_HISTORY = 120;
+    /**
+     * The system property giving the local port the game's metrics are served on.
+     */
+    private static final String METRICS_PROPERTY = "pong.metrics";
+    /**
+     * The most bytes a frame of --alloc-check may allocate on average.
+     */
+    private static final long DEFAULT_ALLOCATION_BUDGET = 16 * 1024;
+    /**
+     * The frames --alloc-check runs before it starts counting, for the JIT and the caches to settle.
+     */
+    private static final long WARMUP_FRAMES = 500;
+    /**
+     * The most games --alloc-check plays to count its frames before it gives up.
+     */
+    private static final int MAX_ALLOCATION_GAMES = 20;
+
     /**
      * Main method to run the game.
+     * Run with "--headless [ticks] [speed] [tick|event] [threads] [none|software]" to simulate without
+     * a window and print the tick rate. With "software", every tick is also drawn into memory by the
+     * software rasterizer, on the same number of threads.
+     * Run with "--record [directory] [speed] [threads]" to play a game without a window and write
+     * every frame to the directory as numbered PNG images, encoded on the given number of threads.
+     * Run with "--alloc-check [frames] [budget] [balls]" to run the game loop without a window and fail
+     * with exit code 1 if its frames allocate more than the budget, in bytes per frame, once warmed up.
+     * While playing, "p" shows the frame profile, and -Dpong.profile=[directory] dumps it there
+     * as profile.json and profile.csv every few seconds. -Dpong.jank=[milliseconds] logs every frame
+     * that takes longer, with the garbage collections and JIT compilation that overlapped it.
+     * With -Dpong.metrics=[port], playing and --headless serve the game's metrics for Prometheus at
+     * http://127.0.0.1:[port]/metrics.
      * @param args
+     * @throws IOException if the recording directory cannot be made or the metrics port listened on
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+            double speed = args.length > 2 ? Double.parseDouble(args[2]) : Game.DEFAULT_BALL_SPEED;
+            boolean eventDriven = args.length > 3 && args[3].equals("event");
+            int threads = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+            boolean draw = args.length > 5 && args[5].equals("software");
+            runHeadless(ticks, speed, eventDriven, threads, draw);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--alloc-check")) {
+            long frames = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+            long budget = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_ALLOCATION_BUDGET;
+            int balls = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+            if (!checkAllocations(frames, budget, balls)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--record")) {
+            String directory = args.length > 1 ? args[1] : "frames";
+            double speed = args.length > 2 ? Double.parseDouble(args[2]) : Game.DEFAULT_BALL_SPEED;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+            record(directory, speed, threads);
+            return;
+        }
         Game game = new Game();
+        String profile = System.getProperty(PROFILE_PROPERTY, "");
+        if (!profile.isEmpty()) {
+            game.getProfiler().setDump(Paths.get(profile), PROFILE_DUMP_NANOS);
+        }
+        String jank = System.getProperty(JANK_PROPERTY, "");
+        if (!jank.isEmpty()) {
+            long budget = (long) (Double.parseDouble(jank) * 1_000_000);
+            game.setJankMonitor(new JankMonitor(budget, JANK_HISTORY, System.out));
+        }
+        game.initialize();
+        MetricsServer server = serveMetrics(game);
+        try {
+            game.run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Starts serving a game's metrics, if -Dpong.metrics gives a port.
+     * @param game the game
+     * @return the server, or null if no port was given
+     * @throws IOException if the port cannot be listened on
+     */
+    private static MetricsServer serveMetrics(Game game) throws IOException {
+        String port = System.getProperty(METRICS_PROPERTY, "");
+        if (port.isEmpty()) {
+            return null;
+        }
+        GameMetrics metrics = new GameMetrics();
+        game.setMetrics(metrics);
+        MetricsServer server = new MetricsServer(metrics, Integer.parseInt(port));
+        System.out.println("Metrics: " + server);
+        return server;
+    }
+
+    /**
+     * Runs the game headless for the given number of ticks and prints how fast it ran.
+     * @param ticks the number of ticks to simulate
+     * @param speed the speed the balls start with
+     * @param eventDriven true to move the balls with the impact scheduler
+     * @param threads the number of physics threads, 0 to move balls one after another
+     * @param draw true to draw every tick with the software rasterizer
+     * @throws IOException if the metrics port cannot be listened on
+     */
+    private static void runHeadless(int ticks, double speed, boolean eventDriven, int threads, boolean draw)
+            throws IOException {
+        SoftwareDisplay software = draw ? new SoftwareDisplay(800, 600, threads) : null;
+        Game game = new Game(draw ? software : new HeadlessDisplay(800, 600));
+        game.setBallSpeed(speed);
+        game.setEventDriven(eventDriven);
+        game.setPhysicsThreads(threads);
+        game.initialize();
+        MetricsServer server = serveMetrics(game);
+        long start = System.nanoTime();
+        int ran = 0;
+        if (draw) {
+            while (ran < ticks && game.step(1) == 1) {
+                game.drawFrame();
+                ran++;
+            }
+        } else {
+            ran = game.step(ticks);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        game.setPhysicsThreads(0);
+        if (server != null) {
+            server.close();
+        }
+        System.out.println("Ticks: " + ran + " in " + seconds + "s (" + (long) (ran / seconds) + " ticks/s)");
+        System.out.println("Blocks left: " + game.getRemainingBlocks()
+                + ", balls left: " + game.getRemainingBalls() + ", score: " + game.getScore());
+        System.out.println("Physics: " + game.getEnvironment().getStats());
+        System.out.println("Slab filter: " + UniformGrid.getFilterName());
+        if (draw) {
+            System.out.println("Software raster: " + software.getRasterizer());
+            software.close();
+        }
+    }
+
+    /**
+     * Plays a game without a window through the normal game loop, writing every frame as an image.
+     * The loop waits for the encoders rather than the clock, so the recording plays at the frame rate
+     * however long it took to write.
+     * @param directory the directory the images are written to
+     * @param speed the speed the balls start with
+     * @param threads the number of encoder threads
+     * @throws IOException if the directory cannot be made
+     */
+    private static void record(String directory, double speed, int threads) throws IOException {
+        Game game = new Game(new HeadlessDisplay(800, 600));
+        game.setBallSpeed(speed);
+        game.setRenderThread(false);
+        game.setDirtyRectangles(false);
+        game.setFrameRate(RECORD_FRAME_RATE);
+        game.setFrameExporter(new FrameExporter(Paths.get(directory), 800, 600, threads, 2 * threads + 1));
         game.initialize();
         game.run();
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs the game loop without a window, unpaced and on one thread, and checks that once warmed up
+     * its frames allocate no more than a budget on average. Games are seeded 1, 2, 3 and so on, so they
+     * play the same way every time; when a game ends before all the frames were counted, the next one
+     * is warmed up and counts the rest. The check fails if MAX_ALLOCATION_GAMES games are not enough.
+     * @param frames the number of frames to count after the warm-up
+     * @param budget the most bytes a frame may allocate on average
+     * @param balls the number of balls
+     * @return true if all the frames were counted and kept to the budget, or the JVM cannot count allocations
+     */
+    private static boolean checkAllocations(long frames, long budget, int balls) {
+        if (!AllocationMeter.isSupported()) {
+            System.out.println("Allocations: not counted, this JVM has no per-thread allocation counter");
+            return true;
+        }
+        long counted = 0;
+        long bytes = 0;
+        for (int seed = 1; counted < frames; seed++) {
+            if (seed > MAX_ALLOCATION_GAMES) {
+                System.out.println("FAIL: only " + counted + " of " + frames + " frames were counted in "
+                        + MAX_ALLOCATION_GAMES + " games");
+                return false;
+            }
+            Game game = new Game(new HeadlessDisplay(800, 600));
+            game.setSeed(seed);
+            game.setBallCount(balls);
+            game.setRenderThread(false);
+            game.setPaced(false);
+            game.getProfiler().setEnabled(true);
+            game.initialize();
+            game.setFrameLimit(WARMUP_FRAMES);
+            game.run();
+            if (game.isOver()) {
+                continue;
+            }
+            game.getProfiler().reset();
+            game.setFrameLimit(frames - counted);
+            game.run();
+            AllocationMeter meter = game.getProfiler().getAllocations();
+            System.out.println("Allocations, game " + seed + ": " + meter);
+            counted += meter.getFrames();
+            bytes += meter.getTotalBytes();
+        }
+        double perFrame = (double) bytes / counted;
+        boolean kept = perFrame <= budget;
+        System.out.println((kept ? "PASS" : "FAIL") + ": " + Math.round(perFrame) + " bytes per frame over "
+                + counted + " frames, budget " + budget);
+        return kept;
+    }
+}
@@ -6,6 +6,7 @@ package Geomtry;
 public class Line {
     private Point a;
     private Point b;
+    private Ray ray;
 
     /**
      * Constructor that creates a line segment using two points.
@@ -111,65 +112,29 @@ public class Line {
 
     /**
      * Finds the intersection point of this line with another line.
+     * Both segments are written parametrically, so vertical lines need no special case.
      *
      * @param line The other line.
      * @return The intersection point or null if no intersection exists.
      */
     private Point intersection(Line line) {
-        if (this.isParallel(line)) {
-            return (this.isOverlapping(line)) ? null : null;
-        }
-
-        if (this.isVertical()) {
-            double m2 = (line.b.getY() - line.a.getY()) / (line.b.getX() - line.a.getX());
-            double b2 = line.a.getY() - m2 * line.a.getX();
-            double x = this.a.getX();
-            double y = m2 * x + b2;
-            Point intersectionPoint = new Point(x, y);
-            return (isPointOnSegment(intersectionPoint) && line.isPointOnSegment(intersectionPoint))
-                    ? intersectionPoint : null;
-        }
-
-        if (line.isVertical()) {
-            double m1 = (b.getY() - a.getY()) / (b.getX() - a.getX());
-            double b1 = a.getY() - m1 * a.getX();
-            double x = line.a.getX();
-            double y = m1 * x + b1;
-            Point intersectionPoint = new Point(x, y);
-            return (isPointOnSegment(intersectionPoint) && line.isPointOnSegment(intersectionPoint))
-                    ? intersectionPoint : null;
-        }
-
-        double a1 = b.getY() - a.getY();
-        double b1 = a.getX() - b.getX();
-        double c1 = a1 * a.getX() + b1 * a.getY();
-
-        double a2 = line.b.getY() - line.a.getY();
-        double b2 = line.a.getX() - line.b.getX();
-        double c2 = a2 * line.a.getX() + b2 * line.a.getY();
-
-        double det = a1 * b2 - a2 * b1;
+        double rx = b.getX() - a.getX();
+        double ry = b.getY() - a.getY();
+        double sx = line.b.getX() - line.a.getX();
+        double sy = line.b.getY() - line.a.getY();
+        double det = rx * sy - ry * sx;
         if (det == 0) {
+            // Parallel (or overlapping) segments have no single intersection point.
             return null;
         }
-
-        double x = Math.round((b2 * c1 - b1 * c2) / det * 1e9) / 1e9;
-        double y = Math.round((a1 * c2 - a2 * c1) / det * 1e9) / 1e9;
-
-        Point intersectionPoint = new Point(x, y);
-        return (isPointOnSegment(intersectionPoint) && line.isPointOnSegment(intersectionPoint))
-                ? intersectionPoint : null;
-    }
-
-    /**
-     * Checks if a point is on the line segment.
-     *
-     * @param p The point to check.
-     * @return True if the point is on the segment, false otherwise.
-     */
-    private boolean isPointOnSegment(Point p) {
-        return (Math.min(a.getX(), b.getX()) <= p.getX() && p.getX() <= Math.max(a.getX(), b.getX()))
-                && (Math.min(a.getY(), b.getY()) <= p.getY() && p.getY() <= Math.max(a.getY(), b.getY()));
+        double qx = line.a.getX() - a.getX();
+        double qy = line.a.getY() - a.getY();
+        double t = (qx * sy - qy * sx) / det;
+        double u = (qx * ry - qy * rx) / det;
+        if (t < 0 || t > 1 || u < 0 || u > 1) {
+            return null;
+        }
+        return new Point(a.getX() + t * rx, a.getY() + t * ry);
     }
 
     /**
@@ -224,20 +189,24 @@ public class Line {
      * @return The closest intersection point or null if no intersection exists.
      */
     public Point closestIntersectionToStartOfLine(Rectangle rect) {
-        java.util.List<Point> intersectionPoints = rect.intersectionPoints(this);
-        if (intersectionPoints.isEmpty()) {
+        Ray r = ray();
+        double t = r.firstCrossing(rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+        if (t == Ray.MISS) {
             return null;
         }
-        Point closestPoint = intersectionPoints.get(0);
-        double minDistance = this.a.distance(closestPoint);
-        for (Point point : intersectionPoints) {
-            double distance = this.a.distance(point);
-            if (distance < minDistance) {
-                closestPoint = point;
-                minDistance = distance;
-            }
-        }
-        return closestPoint;
+        return rect.pointOnSide(r, t, r.side());
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns this line as a Ray of the geometry kernel.
+     * The ray is created once, since a line never changes.
+     *
+     * @return the ray from the start to the end of the line.
+     */
+    public Ray ray() {
+        if (ray == null) {
+            ray = new Ray(a.getX(), a.getY(), b.getX(), b.getY());
+        }
+        return ray;
+    }
+}
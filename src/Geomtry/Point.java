@@ -25,7 +25,22 @@ public class Point {
      * @return The distance between the two points.
      */
     public double distance(Point other) {
-        return Math.sqrt(Math.pow(this.x - other.getX(), 2) + Math.pow(this.y - other.getY(), 2));
+        return distance(this.x, this.y, other.getX(), other.getY());
+    }
+
+    /**
+     * Calculates the distance between two coordinates.
+     *
+     * @param x1 The x-coordinate of the first point.
+     * @param y1 The y-coordinate of the first point.
+     * @param x2 The x-coordinate of the second point.
+     * @param y2 The y-coordinate of the second point.
+     * @return The distance between the two points.
+     */
+    public static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     /**
@@ -0,0 +1,492 @@
+package Geomtry;
+
+/**
+ * The Ray class is the primitive geometry kernel used by Line and Rectangle.
+ * It holds a segment as plain doubles, with the inverse of its direction precomputed,
+ * and clips it against axis-aligned boxes with the slab method.
+ * A Ray can be reset and reused, so casting it never allocates.
+ * Distances along the ray are parametric: 0 is the start of the segment and 1 is its end.
+ */
+public final class Ray {
+    /**
+     * Returned when the segment does not cross the box.
+     */
+    public static final double MISS = Double.POSITIVE_INFINITY;
+    /**
+     * No side was crossed.
+     */
+    public static final int NONE = -1;
+    /**
+     * The top side of a box (minimum y).
+     */
+    public static final int TOP = 0;
+    /**
+     * The right side of a box (maximum x).
+     */
+    public static final int RIGHT = 1;
+    /**
+     * The bottom side of a box (maximum y).
+     */
+    public static final int BOTTOM = 2;
+    /**
+     * The left side of a box (minimum x).
+     */
+    public static final int LEFT = 3;
+
+    private double x0;
+    private double y0;
+    private double dx;
+    private double dy;
+    private double invDx;
+    private double invDy;
+    private double near;
+    private double far;
+    private int nearSide;
+    private int farSide;
+    private int side = NONE;
+    private double normalX;
+    private double normalY;
+    private double contactX;
+    private double contactY;
+
+    /**
+     * Constructor for an empty ray, to be set later.
+     */
+    public Ray() {
+    }
+
+    /**
+     * Constructor for the segment between two points.
+     *
+     * @param x0 The x-coordinate of the start.
+     * @param y0 The y-coordinate of the start.
+     * @param x1 The x-coordinate of the end.
+     * @param y1 The y-coordinate of the end.
+     */
+    public Ray(double x0, double y0, double x1, double y1) {
+        set(x0, y0, x1, y1);
+    }
+
+    /**
+     * Moves the ray to a new segment.
+     *
+     * @param startX The x-coordinate of the start.
+     * @param startY The y-coordinate of the start.
+     * @param endX   The x-coordinate of the end.
+     * @param endY   The y-coordinate of the end.
+     * @return this ray
+     */
+    public Ray set(double startX, double startY, double endX, double endY) {
+        this.x0 = startX;
+        this.y0 = startY;
+        this.dx = endX - startX;
+        this.dy = endY - startY;
+        this.invDx = 1.0 / dx;
+        this.invDy = 1.0 / dy;
+        this.side = NONE;
+        return this;
+    }
+
+    /**
+     * Clips the infinite line of the ray against a box.
+     * Afterwards nearT/farT hold where the line enters and leaves the box, and
+     * nearSide/farSide which sides it crosses there. Boundaries count as inside.
+     *
+     * @param minX The left of the box.
+     * @param minY The top of the box.
+     * @param maxX The right of the box.
+     * @param maxY The bottom of the box.
+     * @return true if the segment itself touches the box, false otherwise.
+     */
+    public boolean clip(double minX, double minY, double maxX, double maxY) {
+        double txNear;
+        double txFar;
+        int sxNear;
+        int sxFar;
+        if (dx == 0) {
+            if (x0 < minX || x0 > maxX) {
+                return false;
+            }
+            txNear = Double.NEGATIVE_INFINITY;
+            txFar = Double.POSITIVE_INFINITY;
+            sxNear = NONE;
+            sxFar = NONE;
+        } else if (dx > 0) {
+            txNear = (minX - x0) * invDx;
+            txFar = (maxX - x0) * invDx;
+            sxNear = LEFT;
+            sxFar = RIGHT;
+        } else {
+            txNear = (maxX - x0) * invDx;
+            txFar = (minX - x0) * invDx;
+            sxNear = RIGHT;
+            sxFar = LEFT;
+        }
+
+        double tyNear;
+        double tyFar;
+        int syNear;
+        int syFar;
+        if (dy == 0) {
+            if (y0 < minY || y0 > maxY) {
+                return false;
+            }
+            tyNear = Double.NEGATIVE_INFINITY;
+            tyFar = Double.POSITIVE_INFINITY;
+            syNear = NONE;
+            syFar = NONE;
+        } else if (dy > 0) {
+            tyNear = (minY - y0) * invDy;
+            tyFar = (maxY - y0) * invDy;
+            syNear = TOP;
+            syFar = BOTTOM;
+        } else {
+            tyNear = (maxY - y0) * invDy;
+            tyFar = (minY - y0) * invDy;
+            syNear = BOTTOM;
+            syFar = TOP;
+        }
+
+        // On a tie (a corner) the top/bottom side wins, like Block.hit always did.
+        if (tyNear >= txNear) {
+            near = tyNear;
+            nearSide = syNear;
+        } else {
+            near = txNear;
+            nearSide = sxNear;
+        }
+        if (tyFar <= txFar) {
+            far = tyFar;
+            farSide = syFar;
+        } else {
+            far = txFar;
+            farSide = sxFar;
+        }
+        return near <= far && far >= 0 && near <= 1;
+    }
+
+    /**
+     * Finds where the segment first crosses the boundary of a box.
+     * A segment that starts outside crosses where it enters; a segment that starts inside
+     * crosses where it leaves. A segment that starts on the boundary and leaves right away
+     * does not cross it. The crossed side is available from side().
+     *
+     * @param minX The left of the box.
+     * @param minY The top of the box.
+     * @param maxX The right of the box.
+     * @param maxY The bottom of the box.
+     * @return the parametric distance of the crossing, or MISS.
+     */
+    public double firstCrossing(double minX, double minY, double maxX, double maxY) {
+        if (clip(minX, minY, maxX, maxY) && far > 0) {
+            if (near >= 0) {
+                side = nearSide;
+                return near;
+            }
+            if (far <= 1) {
+                side = farSide;
+                return far;
+            }
+        }
+        side = NONE;
+        return MISS;
+    }
+
+    /**
+     * Sweeps a circle of the given radius along the segment and finds when it first touches a box.
+     * This is a ray cast against the box grown by the radius, with rounded corners.
+     * A circle that already overlaps the box touches it at 0, but only if it is moving further in;
+     * a circle that is already moving out is left alone. With a radius of 0 this is firstCrossing.
+     * Afterwards normalX/normalY hold the unit normal of the touched surface, pointing out of the box,
+     * and contactX/contactY the touching point on the box.
+     *
+     * @param minX   The left of the box.
+     * @param minY   The top of the box.
+     * @param maxX   The right of the box.
+     * @param maxY   The bottom of the box.
+     * @param radius The radius of the circle.
+     * @return the parametric time of impact, or MISS.
+     */
+    public double sweep(double minX, double minY, double maxX, double maxY, double radius) {
+        if (radius <= 0) {
+            double t = firstCrossing(minX, minY, maxX, maxY);
+            if (t != MISS) {
+                setFaceContact(side, t, minX, minY, maxX, maxY);
+            }
+            return t;
+        }
+        side = NONE;
+
+        // Overlapping already: push out along the shortest way, if moving in.
+        double closestX = Math.max(minX, Math.min(x0, maxX));
+        double closestY = Math.max(minY, Math.min(y0, maxY));
+        double ox = x0 - closestX;
+        double oy = y0 - closestY;
+        double distanceSquared = ox * ox + oy * oy;
+        if (distanceSquared < radius * radius) {
+            if (distanceSquared > 0) {
+                double d = Math.sqrt(distanceSquared);
+                normalX = ox / d;
+                normalY = oy / d;
+                contactX = closestX;
+                contactY = closestY;
+            } else {
+                setFaceContact(nearestFace(minX, minY, maxX, maxY), 0, minX, minY, maxX, maxY);
+            }
+            return dx * normalX + dy * normalY < 0 ? 0 : MISS;
+        }
+
+        if (!clip(minX - radius, minY - radius, maxX + radius, maxY + radius) || far <= 0) {
+            return MISS;
+        }
+        if (near >= 0) {
+            double px = x(near);
+            double py = y(near);
+            boolean xSide = nearSide == LEFT || nearSide == RIGHT;
+            if (xSide ? py >= minY && py <= maxY : px >= minX && px <= maxX) {
+                setFaceContact(nearSide, near, minX, minY, maxX, maxY);
+                side = nearSide;
+                return near;
+            }
+        }
+
+        // Entering through a corner region: the circle can only touch the corner itself.
+        double t = Math.max(near, 0);
+        double cornerX = x(t) < (minX + maxX) / 2 ? minX : maxX;
+        double cornerY = y(t) < (minY + maxY) / 2 ? minY : maxY;
+        double mx = x0 - cornerX;
+        double my = y0 - cornerY;
+        double a = dx * dx + dy * dy;
+        double b = mx * dx + my * dy;
+        double c = mx * mx + my * my - radius * radius;
+        double discriminant = b * b - a * c;
+        if (a == 0 || discriminant < 0) {
+            return MISS;
+        }
+        double hit = (-b - Math.sqrt(discriminant)) / a;
+        if (hit < 0 || hit > 1) {
+            return MISS;
+        }
+        normalX = (x(hit) - cornerX) / radius;
+        normalY = (y(hit) - cornerY) / radius;
+        contactX = cornerX;
+        contactY = cornerY;
+        return hit;
+    }
+
+    /**
+     * Returns the side of a box nearest to the start of the ray, which must be inside the box.
+     *
+     * @param minX The left of the box.
+     * @param minY The top of the box.
+     * @param maxX The right of the box.
+     * @param maxY The bottom of the box.
+     * @return the nearest side.
+     */
+    private int nearestFace(double minX, double minY, double maxX, double maxY) {
+        double left = x0 - minX;
+        double right = maxX - x0;
+        double top = y0 - minY;
+        double bottom = maxY - y0;
+        double best = Math.min(Math.min(left, right), Math.min(top, bottom));
+        if (best == top) {
+            return TOP;
+        }
+        if (best == bottom) {
+            return BOTTOM;
+        }
+        return best == left ? LEFT : RIGHT;
+    }
+
+    /**
+     * Sets the normal and the contact point for a circle touching a side of a box.
+     * The contact point is snapped exactly onto the side.
+     *
+     * @param face   The side that is touched.
+     * @param t      The parametric time of impact.
+     * @param minX   The left of the box.
+     * @param minY   The top of the box.
+     * @param maxX   The right of the box.
+     * @param maxY   The bottom of the box.
+     */
+    private void setFaceContact(int face, double t, double minX, double minY, double maxX, double maxY) {
+        switch (face) {
+            case TOP:
+                normalX = 0;
+                normalY = -1;
+                contactX = x(t);
+                contactY = minY;
+                break;
+            case BOTTOM:
+                normalX = 0;
+                normalY = 1;
+                contactX = x(t);
+                contactY = maxY;
+                break;
+            case LEFT:
+                normalX = -1;
+                normalY = 0;
+                contactX = minX;
+                contactY = y(t);
+                break;
+            case RIGHT:
+                normalX = 1;
+                normalY = 0;
+                contactX = maxX;
+                contactY = y(t);
+                break;
+            default:
+                normalX = 0;
+                normalY = 0;
+                contactX = x(t);
+                contactY = y(t);
+                break;
+        }
+    }
+
+    /**
+     * Returns the x part of the surface normal found by the last sweep.
+     *
+     * @return the x part of the normal.
+     */
+    public double normalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y part of the surface normal found by the last sweep.
+     *
+     * @return the y part of the normal.
+     */
+    public double normalY() {
+        return normalY;
+    }
+
+    /**
+     * Returns the x-coordinate of the contact point found by the last sweep.
+     *
+     * @return the x-coordinate.
+     */
+    public double contactX() {
+        return contactX;
+    }
+
+    /**
+     * Returns the y-coordinate of the contact point found by the last sweep.
+     *
+     * @return the y-coordinate.
+     */
+    public double contactY() {
+        return contactY;
+    }
+
+    /**
+     * Returns the side crossed by the last call to firstCrossing.
+     *
+     * @return one of TOP, RIGHT, BOTTOM, LEFT or NONE.
+     */
+    public int side() {
+        return side;
+    }
+
+    /**
+     * Returns where the line enters the box of the last clip.
+     *
+     * @return the parametric entry distance.
+     */
+    public double nearT() {
+        return near;
+    }
+
+    /**
+     * Returns where the line leaves the box of the last clip.
+     *
+     * @return the parametric exit distance.
+     */
+    public double farT() {
+        return far;
+    }
+
+    /**
+     * Returns the side where the line enters the box of the last clip.
+     *
+     * @return the entry side.
+     */
+    public int nearSide() {
+        return nearSide;
+    }
+
+    /**
+     * Returns the side where the line leaves the box of the last clip.
+     *
+     * @return the exit side.
+     */
+    public int farSide() {
+        return farSide;
+    }
+
+    /**
+     * Returns the x-coordinate at a parametric distance along the ray.
+     *
+     * @param t The parametric distance.
+     * @return the x-coordinate.
+     */
+    public double x(double t) {
+        return x0 + dx * t;
+    }
+
+    /**
+     * Returns the y-coordinate at a parametric distance along the ray.
+     *
+     * @param t The parametric distance.
+     * @return the y-coordinate.
+     */
+    public double y(double t) {
+        return y0 + dy * t;
+    }
+
+    /**
+     * Returns the x-coordinate of the start.
+     *
+     * @return the x-coordinate.
+     */
+    public double startX() {
+        return x0;
+    }
+
+    /**
+     * Returns the y-coordinate of the start.
+     *
+     * @return the y-coordinate.
+     */
+    public double startY() {
+        return y0;
+    }
+
+    /**
+     * Returns the change in x from the start to the end.
+     *
+     * @return the change in x.
+     */
+    public double dx() {
+        return dx;
+    }
+
+    /**
+     * Returns the change in y from the start to the end.
+     *
+     * @return the change in y.
+     */
+    public double dy() {
+        return dy;
+    }
+
+    /**
+     * Returns the length of the segment.
+     *
+     * @return the length.
+     */
+    public double length() {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
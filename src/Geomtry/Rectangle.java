@@ -59,29 +59,88 @@ public class Rectangle {
         return height;
     }
 
+    /**
+     * Getter for the left edge of the rectangle.
+     *
+     * @return The smallest x-coordinate.
+     */
+    public double getMinX() {
+        return upperLeft.getX();
+    }
+
+    /**
+     * Getter for the top edge of the rectangle.
+     *
+     * @return The smallest y-coordinate.
+     */
+    public double getMinY() {
+        return upperLeft.getY();
+    }
+
+    /**
+     * Getter for the right edge of the rectangle.
+     *
+     * @return The largest x-coordinate.
+     */
+    public double getMaxX() {
+        return upperLeft.getX() + width;
+    }
+
+    /**
+     * Getter for the bottom edge of the rectangle.
+     *
+     * @return The largest y-coordinate.
+     */
+    public double getMaxY() {
+        return upperLeft.getY() + height;
+    }
+
     /**
      * Get the intersection points of the rectangle edges with a given line.
      * @param line
-     * @return a list of the intersection points
+     * @return a list of the intersection points, closest to the start of the line first
      */
     public java.util.List<Point> intersectionPoints(Line line) {
-         java.util.List<Point> intersectionPoints = new java.util.ArrayList<>();
-         Line[] lines = {
-             new Line(upperLeft.getX(), upperLeft.getY(), upperLeft.getX() + width, upperLeft.getY()), // Top
-             new Line(upperLeft.getX() + width, upperLeft.getY(),
-                     upperLeft.getX() + width, upperLeft.getY() + height), // Right
-             new Line(upperLeft.getX() + width,
-                     upperLeft.getY() + height, upperLeft.getX(), upperLeft.getY() + height), // Bottom
-             new Line(upperLeft.getX(), upperLeft.getY() + height, upperLeft.getX(), upperLeft.getY()) // Left
-         };
-            for (Line rectLine : lines) {
-                Point intersection = line.intersectionWith(rectLine);
-                if (intersection != null && !intersectionPoints.contains(intersection)) {
-                    intersectionPoints.add(intersection);
-                }
-            }
-            return  intersectionPoints;
+        java.util.List<Point> intersectionPoints = new java.util.ArrayList<>(2);
+        Ray ray = line.ray();
+        if (!ray.clip(getMinX(), getMinY(), getMaxX(), getMaxY())) {
+            return intersectionPoints;
+        }
+        double near = ray.nearT();
+        double far = ray.farT();
+        if (near >= 0) {
+            intersectionPoints.add(pointOnSide(ray, near, ray.nearSide()));
+        }
+        if (far <= 1 && far != near) {
+            intersectionPoints.add(pointOnSide(ray, far, ray.farSide()));
+        }
+        return intersectionPoints;
     }
+
+    /**
+     * Returns the point at a distance along a ray, snapped exactly onto one of the rectangle's sides.
+     * Snapping keeps the side coordinate exact, so callers can compare it with the edges.
+     *
+     * @param ray  The ray.
+     * @param t    The parametric distance along the ray.
+     * @param side The side the point is on, as one of the Ray side constants.
+     * @return the point.
+     */
+    public Point pointOnSide(Ray ray, double t, int side) {
+        switch (side) {
+            case Ray.TOP:
+                return new Point(ray.x(t), getMinY());
+            case Ray.BOTTOM:
+                return new Point(ray.x(t), getMaxY());
+            case Ray.LEFT:
+                return new Point(getMinX(), ray.y(t));
+            case Ray.RIGHT:
+                return new Point(getMaxX(), ray.y(t));
+            default:
+                return new Point(ray.x(t), ray.y(t));
+        }
+    }
+
     /**
      * Check if a point is inside the rectangle.
      *
@@ -89,8 +148,17 @@ public class Rectangle {
      * @return true if the point is inside the rectangle, false otherwise.
      */
     public boolean containsPoint(Point p) {
-        double x = p.getX();
-        double y = p.getY();
+        return contains(p.getX(), p.getY());
+    }
+
+    /**
+     * Check if a coordinate is inside the rectangle.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return true if the coordinate is inside the rectangle, false otherwise.
+     */
+    public boolean contains(double x, double y) {
         double rx = this.upperLeft.getX();
         double ry = this.upperLeft.getY();
         return x >= rx && x <= rx + width
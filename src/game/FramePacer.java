@@ -0,0 +1,121 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FramePacer holds a loop to a fixed rate using System.nanoTime().
+ * It sleeps while the next deadline is more than a millisecond away, since a sleep can wake
+ * up late by about that much, and spins for the rest, so frames start within microseconds of
+ * their deadline. Deadlines follow each other exactly one period apart, so small errors do not
+ * add up; a loop that falls more than a whole period behind starts counting again from now.
+ * It also keeps statistics of how far from its deadline each frame started.
+ */
+public class FramePacer {
+    /**
+     * How close to the deadline the pacer stops sleeping and starts spinning, in nanoseconds.
+     */
+    private static final long SPIN_NANOS = 1_000_000;
+
+    private final long period;
+    private long deadline;
+    private long frames;
+    private long dropped;
+    private long totalError;
+    private long maxError;
+    private long late;
+
+    /**
+     * Constructs a pacer for a rate. The first deadline is one period from now.
+     * @param rate the number of frames per second
+     */
+    public FramePacer(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.period = Math.max(1, Math.round(1e9 / rate));
+        this.deadline = System.nanoTime() + period;
+    }
+
+    /**
+     * Waits until the next deadline and moves the deadline one period on.
+     */
+    public void waitForNextFrame() {
+        long now = System.nanoTime();
+        while (deadline - now > SPIN_NANOS) {
+            LockSupport.parkNanos(deadline - now - SPIN_NANOS);
+            now = System.nanoTime();
+        }
+        while (now < deadline) {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+        long error = now - deadline;
+        frames++;
+        totalError += error;
+        maxError = Math.max(maxError, error);
+        // A frame that starts half a period late is visibly uneven.
+        if (error > period / 2) {
+            late++;
+        }
+        deadline += period;
+        // Past the next deadline too: the frame started more than a whole period late.
+        if (now - deadline > 0) {
+            dropped++;
+            deadline = now + period;
+        }
+    }
+
+    /**
+     * Returns the time between two frames.
+     * @return the period in nanoseconds
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns the number of frames waited for.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the average time frames started after their deadline.
+     * @return the mean error in nanoseconds
+     */
+    public double getMeanError() {
+        return frames == 0 ? 0 : (double) totalError / frames;
+    }
+
+    /**
+     * Returns the latest any frame started after its deadline.
+     * @return the largest error in nanoseconds
+     */
+    public long getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Returns the number of frames that started more than half a period late.
+     * @return the number of late frames
+     */
+    public long getLateFrames() {
+        return late;
+    }
+
+    /**
+     * Returns the number of times the loop fell a whole period behind and the deadlines were reset.
+     * @return the number of resets
+     */
+    public long getDroppedFrames() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "frames: " + frames + ", mean error: " + Math.round(getMeanError() / 1000) + "us"
+                + ", max error: " + maxError / 1000 + "us, late: " + late + ", dropped: " + dropped;
+    }
+}
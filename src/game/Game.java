@@ -1,8 +1,6 @@
 package game;
 
 import biuoop.DrawSurface;
-import biuoop.GUI;
-import biuoop.Sleeper;
 import java.util.Random;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,22 +8,60 @@ import Geomtry.Point;
 import Geomtry.Rectangle;
 import game.collision.Collidable;
 import game.collision.Sprite;
+import game.display.Display;
+import game.display.DirtyRectRenderer;
+import game.display.DirtyRegion;
+import game.display.FrameExporter;
+import game.display.GuiDisplay;
+import game.display.RenderCommandList;
+import game.display.RenderLoop;
+import game.display.TripleBuffer;
 import game.listeners.BallRemover;
 import game.listeners.BlockRemover;
 import game.listeners.ScoreTrackingListener;
+import game.metrics.FrameEvent;
+import game.metrics.FrameProfiler;
+import game.metrics.GameMetrics;
+import game.metrics.JankMonitor;
 import game.objects.Ball;
+import game.objects.BallSystem;
 import game.objects.Block;
 import game.objects.Velocity;
 import game.objects.ScoreIndecator;
+import game.objects.ProfilerOverlay;
 import game.objects.Paddle;
 import game.sprites.SpriteCollection;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
 /**
  * The Game class sets up and runs a simple block-breaking game.
  */
 public class Game {
+    /**
+     * The speed the balls start with, in pixels per tick.
+     */
+    public static final double DEFAULT_BALL_SPEED = 2;
+    /**
+     * The number of balls the game starts with.
+     */
+    public static final int DEFAULT_BALL_COUNT = 2;
+    /**
+     * The number of ticks simulated per second by run().
+     */
+    public static final double DEFAULT_SIMULATION_RATE = 144;
+    /**
+     * The number of frames drawn per second by run().
+     */
+    public static final double DEFAULT_FRAME_RATE = 144;
+    /**
+     * The most real time one frame of run() catches up on, in nanoseconds.
+     * After a longer stall the simulation slows down instead of running ticks in a burst.
+     */
+    private static final long MAX_FRAME_NANOS = 250_000_000;
+
     private SpriteCollection sprites = new SpriteCollection();
     private GameEnvironment environment = new GameEnvironment();
+    private BallSystem balls = new BallSystem();
     private Counter blocksCounter = new Counter();
     private Counter ballsCounter = new Counter();
     private Counter score = new Counter();
@@ -33,6 +69,44 @@ public class Game {
     private BallRemover ballRemover = new BallRemover(this, ballsCounter);
     private ScoreTrackingListener scoreTrackingListener = new ScoreTrackingListener(score, 5);
     private ScoreIndecator s = new ScoreIndecator(score);
+    private Display display;
+    private long ticks;
+    private double ballSpeed = DEFAULT_BALL_SPEED;
+    private int ballCount = DEFAULT_BALL_COUNT;
+    private Random random = new Random();
+    private ImpactScheduler scheduler;
+    private double simulationRate = DEFAULT_SIMULATION_RATE;
+    private double frameRate = DEFAULT_FRAME_RATE;
+    private FramePacer pacer;
+    private boolean renderThread = true;
+    private boolean dirtyRectangles = true;
+    private DirtyRectRenderer presenter;
+    private FrameExporter exporter;
+    private JankMonitor jankMonitor;
+    private GameMetrics metrics;
+    private boolean paced = true;
+    private long frameLimit;
+
+    /**
+     * Constructor for a game shown in a GUI window.
+     */
+    public Game() {
+        this(new GuiDisplay("Game", 800, 600));
+    }
+
+    /**
+     * Constructor for a game shown on the given display.
+     * Use a HeadlessDisplay to run the game without a window.
+     * @param display the display to draw on and read input from
+     */
+    public Game(Display display) {
+        if (display == null) {
+            throw new IllegalArgumentException("Display cannot be null");
+        }
+        this.display = display;
+        sprites.addSprite(balls);
+        balls.setGameEnvironment(environment);
+    }
 
     /**
      * Adds a collidable object to the game environment.
@@ -42,6 +116,14 @@ public class Game {
         environment.addCollidable(c);
     }
 
+    /**
+     * Adds a collidable that moves, like the paddle, to the game environment.
+     * @param c the collidable to add
+     */
+    public void addDynamicCollidable(Collidable c) {
+        environment.addDynamicCollidable(c);
+    }
+
     /**
      * Adds a sprite to the sprite collection.
      * @param s the sprite to add
@@ -50,15 +132,90 @@ public class Game {
         sprites.addSprite(s);
     }
 
+    /**
+     * Sets the speed the balls start with. Call before initialize.
+     * @param speed the ball speed in pixels per tick
+     */
+    public void setBallSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Ball speed must be positive");
+        }
+        this.ballSpeed = speed;
+    }
+
+    /**
+     * Sets the number of balls the game starts with. Call before initialize.
+     * @param count the number of balls
+     */
+    public void setBallCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Ball count must be at least 1");
+        }
+        this.ballCount = count;
+    }
+
+    /**
+     * Seeds the random choices the game makes when it is set up, so a run can be repeated.
+     * Call before initialize.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Moves the balls on a fork-join pool of the given number of threads.
+     * With 0 the balls move one after another and each hit is applied as soon as it happens.
+     * With 1 or more the balls move in parallel and their hits are applied in a fixed order,
+     * so the game plays out the same on any number of threads from 1 up. It may play out differently
+     * than with 0, since hits are applied in another order, but in both no collidable is hit after it
+     * was removed, so the same blocks score the same points.
+     * The pool of an earlier call is shut down, and run() shuts the pool down when the game is won or lost.
+     * When run() returns at the frame limit the pool is kept, so the game can run on; the caller shuts it
+     * down by calling this with 0 once it is done with the game.
+     * @param threads the number of threads, or 0
+     */
+    public void setPhysicsThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Thread count cannot be negative");
+        }
+        ForkJoinPool old = balls.getPool();
+        balls.setPool(threads == 0 ? null : new ForkJoinPool(threads));
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Moves the balls with an impact scheduler instead of every tick. Call before initialize.
+     * @param eventDriven true to use the impact scheduler
+     */
+    public void setEventDriven(boolean eventDriven) {
+        if (eventDriven && scheduler == null) {
+            scheduler = new ImpactScheduler(environment);
+            environment.addEnvironmentListener(scheduler);
+        } else if (!eventDriven && scheduler != null) {
+            environment.removeEnvironmentListener(scheduler);
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Gets the impact scheduler that moves the balls, if the game is event driven.
+     * @return the scheduler, or null when balls move every tick
+     */
+    public ImpactScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * Initializes the game elements.
      */
     public void initialize() {
         // Create the balls
-        for (int i = 0; i < 2; i++) {
-            Random rand = new Random();
+        for (int i = 0; i < ballCount; i++) {
             Ball ball = new Ball(new Point(390, 550), 5, java.awt.Color.RED);
-            ball.setVelocity(Velocity.fromAngleAndSpeed(rand.nextFloat(-60, 60),  2));
+            ball.setVelocity(Velocity.fromAngleAndSpeed(random.nextFloat(-60, 60), ballSpeed));
             ball.setGameEnvironment(this.environment);
             ball.addToGame(this);
             ballsCounter.increase(1);
@@ -79,7 +236,7 @@ public class Game {
         }
 
 // Shuffle positions randomly
-        Collections.shuffle(gridPositions);
+        Collections.shuffle(gridPositions, random);
 
         java.awt.Color[] colors = {
                 java.awt.Color.RED, java.awt.Color.BLUE, java.awt.Color.GREEN,
@@ -87,12 +244,11 @@ public class Game {
         };
 
         int numBlocks = Math.min(100, gridPositions.size()); // max number of blocks
-        Random rand = new Random();
 
         for (int i = 0; i < numBlocks; i++) {
             Point pos = gridPositions.get(i);
             Rectangle rect = new Rectangle(pos, blockWidth, blockHeight);
-            java.awt.Color color = colors[rand.nextInt(colors.length)];
+            java.awt.Color color = colors[random.nextInt(colors.length)];
 
             Block block = new Block(rect, color);
             block.addToGame(this);
@@ -121,61 +277,433 @@ public class Game {
         rightBorder.addToGame(this);
 
         s.addToGame(this);
+        new ProfilerOverlay(environment.getProfiler(), display.getKeyboardSensor()).addToGame(this);
+
+        Paddle paddle = new Paddle(display.getKeyboardSensor(),
+                new Rectangle(new Point(350, 560), 200, 5));
+        paddle.addToGame(this);
+    }
+    /**
+     * Sets how many ticks run() simulates per second. Ball speeds are per tick,
+     * so this is also how fast the game plays. Call before run.
+     * @param rate the number of ticks per second
+     */
+    public void setSimulationRate(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Simulation rate must be positive");
+        }
+        this.simulationRate = rate;
+    }
+
+    /**
+     * Sets how many frames run() draws per second, independently of the simulation rate. Call before run.
+     * @param rate the number of frames per second
+     */
+    public void setFrameRate(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+        this.frameRate = rate;
+    }
+
+    /**
+     * Sets whether run() shows frames from a render thread of its own. Call before run.
+     * With a render thread the game loop only records each frame and hands it over, so a slow
+     * display and a slow tick do not hold each other up. Without one, frames are drawn and shown
+     * on the game loop's thread.
+     * @param enabled true to use a render thread
+     */
+    public void setRenderThread(boolean enabled) {
+        this.renderThread = enabled;
     }
+
+    /**
+     * Sets whether run() draws only the parts of each frame that changed. Call before run.
+     * Sprites report what they changed, frames are drawn into a kept image, and only the changed
+     * region of it is drawn again.
+     * @param enabled true to draw only what changed, false to draw every frame whole
+     */
+    public void setDirtyRectangles(boolean enabled) {
+        this.dirtyRectangles = enabled;
+    }
+
+    /**
+     * Sets an exporter that run() writes every frame to, or null for none. Call before run.
+     * With an exporter, time in the game is counted in frames instead of read from the clock:
+     * each frame advances the simulation by exactly one frame period and run() does not wait
+     * between frames, so the recording is smooth and the game goes as fast as the exporter takes
+     * frames. The exporter is closed when the game ends.
+     * @param exporter the exporter, or null
+     */
+    public void setFrameExporter(FrameExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Sets a monitor that watches run()'s frames for ones over its budget, or null for none. Call before run.
+     * The frame's work is watched, not the wait for the next frame. The monitor is closed when the game ends.
+     * @param monitor the monitor, or null
+     */
+    public void setJankMonitor(JankMonitor monitor) {
+        this.jankMonitor = monitor;
+    }
+
+    /**
+     * Sets the metrics that run() publishes to at the end of every frame, and step() after every tick,
+     * or null for none. Other threads, like a metrics server, may read them while the game runs.
+     * @param metrics the metrics, or null
+     */
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets whether run() keeps to the clock. Call before run. Unpaced, each frame advances the
+     * simulation by exactly one frame period and run() does not wait between frames, so the game
+     * runs as fast as it can draw, the same way every time. Runs with a frame exporter are never paced.
+     * @param enabled true to keep to the clock
+     */
+    public void setPaced(boolean enabled) {
+        this.paced = enabled;
+    }
+
+    /**
+     * Sets the number of frames after which run() returns even though the game is not over,
+     * without the end screen, or 0 to run until it is over. Call before run. run() may be called again
+     * to go on with the game, so the physics pool is not shut down at the limit; see setPhysicsThreads.
+     * @param frames the number of frames, or 0
+     */
+    public void setFrameLimit(long frames) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("Frame limit cannot be negative");
+        }
+        this.frameLimit = frames;
+    }
+
+    /**
+     * Returns the profiler that times the phases of run()'s frames. It is off until enabled,
+     * by pressing "p" to show the overlay or by setting a dump directory.
+     * @return the profiler
+     */
+    public FrameProfiler getProfiler() {
+        return environment.getProfiler();
+    }
+
+    /**
+     * Returns the renderer of the running game loop, with its pixel counts.
+     * @return the renderer, or null if run() was not called or draws whole frames
+     */
+    public DirtyRectRenderer getRenderer() {
+        return presenter;
+    }
+
+    /**
+     * Returns the pacer of the running game loop, with its frame timing statistics.
+     * @return the pacer, or null if run() was not called
+     */
+    public FramePacer getFramePacer() {
+        return pacer;
+    }
+
     /**
      * Runs the game loop.
+     * The simulation advances in fixed ticks: the real time that passed is added up and used up one
+     * tick at a time, so it runs at the simulation rate whatever the frame rate is. Each frame is
+     * drawn between the last two ticks, by how much of a tick is left over.
+     * With a render thread, frames are recorded and published through a triple buffer
+     * for the render thread to show.
      */
     public void run() {
-        GUI gui = new GUI("Game", 800, 600);
-        Sleeper sleeper = new Sleeper();
-        int fps = 144;
-        int msPerFrame = 1000 / fps;
+        long tickNanos = Math.round(1e9 / simulationRate);
+        long frameNanos = Math.round(1e9 / frameRate);
+        pacer = new FramePacer(frameRate);
+        // The renderer's images are kept from an earlier run; the frame numbers starting over make it
+        // draw the first frame whole.
+        if (!dirtyRectangles) {
+            presenter = null;
+        } else if (presenter == null) {
+            presenter = new DirtyRectRenderer();
+        }
+        TripleBuffer<RenderCommandList> frames = null;
+        RenderLoop renderer = null;
+        RenderCommandList local = null;
+        if (renderThread) {
+            frames = new TripleBuffer<>(() -> new RenderCommandList(display.getWidth(), display.getHeight()));
+            renderer = new RenderLoop(display, frames, presenter);
+            renderer.start();
+        } else {
+            local = new RenderCommandList(display.getWidth(), display.getHeight());
+        }
+        long frameNumber = 0;
+        long previous = System.nanoTime();
+        long accumulator = 0;
 
-        Paddle paddle = new Paddle(gui.getKeyboardSensor(),
-                new Rectangle(new Point(350, 560), 200, 5));
-        paddle.addToGame(this);
+        boolean clocked = paced && exporter == null;
+        // Without a render thread every frame is shown before the next is recorded,
+        // so the static layer can change its image in place.
+        sprites.getStaticLayer().setRenderProgress(renderer != null ? renderer::getTakenSequence : null);
+        FrameProfiler profiler = environment.getProfiler();
+        if (renderer != null) {
+            renderer.setProfiler(profiler);
+        }
 
         while (true) {
-            long startTime = System.currentTimeMillis();
+            boolean profiling = profiler.isEnabled();
+            if (profiling) {
+                profiler.beginFrame();
+            }
+            if (jankMonitor != null) {
+                jankMonitor.beginFrame();
+            }
+            long frameStart = metrics != null ? System.nanoTime() : 0;
+            FrameEvent event = new FrameEvent();
+            event.begin();
+            long ticksBefore = ticks;
+            long phaseStart = profiling ? System.nanoTime() : 0;
+            if (!clocked) {
+                accumulator += frameNanos;
+            } else {
+                long now = System.nanoTime();
+                accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+                previous = now;
+            }
+            while (accumulator >= tickNanos && !isOver()) {
+                tick();
+                accumulator -= tickNanos;
+            }
+            phaseStart = lap(profiling, FrameProfiler.Phase.UPDATE, phaseStart);
 
-            DrawSurface d = gui.getDrawSurface();
-            this.sprites.drawAllOn(d);
-            gui.show(d);
-            this.sprites.notifyAllTimePassed();
+            double alpha = Math.min(1, (double) accumulator / tickNanos);
+            RenderCommandList frame = renderer != null ? frames.back() : local;
+            frame.clear();
+            frame.setSequence(frameNumber++);
+            DirtyRegion damage = frame.getDamage();
+            damage.reset();
+            frame.setDamageKnown(this.sprites.reportDamage(damage, alpha));
+            this.sprites.recordAllOn(frame, alpha);
+            lap(profiling, FrameProfiler.Phase.RECORD, phaseStart);
+            if (exporter != null) {
+                exporter.capture(frame);
+            }
+            if (renderer != null) {
+                frames.publish();
+                renderer.signal();
+            } else {
+                phaseStart = profiling ? System.nanoTime() : 0;
+                DrawSurface d = display.getDrawSurface();
+                if (presenter != null) {
+                    presenter.present(frame, d);
+                } else {
+                    frame.replay(d);
+                }
+                phaseStart = lap(profiling, FrameProfiler.Phase.DRAW, phaseStart);
+                display.show(d);
+                lap(profiling, FrameProfiler.Phase.SHOW, phaseStart);
+            }
+            if (profiling) {
+                profiler.endFrame(ballsCounter.getValue());
+            }
+            if (jankMonitor != null && jankMonitor.endFrame()) {
+                jankMonitor.describeScene(sprites.size(), environment.getCollidableCount(),
+                        ballsCounter.getValue());
+            }
+            if (metrics != null) {
+                publish(System.nanoTime() - frameStart);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(frameNumber - 1, (int) (ticks - ticksBefore), ballsCounter.getValue(),
+                        blocksCounter.getValue());
+                event.commit();
+            }
 
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = msPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+            if (renderer != null && isOver()) {
+                renderer.stop();
             }
             //check if player won
             if (blocksCounter.getValue() == 0) {
                 score.increase(100);
                 System.out.println("You Win!\nYour score is: " + score.getValue());
-                DrawSurface gameOver = gui.getDrawSurface();
+                printStatistics();
+                setPhysicsThreads(0);
+                DrawSurface gameOver = display.getDrawSurface();
                 gameOver.setColor(java.awt.Color.RED);
                 gameOver.drawText(150, 300, "You Win!", 80);
                 String scoreString = "Your final score is: " + score.getValue();
                 gameOver.drawText(200, 400, scoreString, 40);
-                gui.show(gameOver);
-                sleeper.sleepFor(10000);
-                gui.close();
+                display.show(gameOver);
+                display.sleepFor(10000);
+                display.close();
                 return;
             }
             //check if player lost
             if (ballsCounter.getValue() == 0) {
                 System.out.println("Game Over.\nYour score is: " + score.getValue());
-                DrawSurface gameOver = gui.getDrawSurface();
+                printStatistics();
+                setPhysicsThreads(0);
+                DrawSurface gameOver = display.getDrawSurface();
                 gameOver.setColor(java.awt.Color.RED);
                 gameOver.drawText(150, 300, "Game Over", 80);
                 String scoreString = "Your score is: " + score.getValue();
                 gameOver.drawText(200, 450, scoreString, 40);
-                gui.show(gameOver);
-                sleeper.sleepFor(10000);
-                gui.close();
+                display.show(gameOver);
+                display.sleepFor(10000);
+                display.close();
+                return;
+            }
+            if (frameLimit > 0 && frameNumber >= frameLimit) {
+                if (renderer != null) {
+                    renderer.stop();
+                }
+                printStatistics();
                 return;
             }
+            if (clocked) {
+                pacer.waitForNextFrame();
+            }
+        }
+    }
+
+    /**
+     * Counts the time since a phase started in the profiler, if the frame is being profiled.
+     * @param profiling whether the frame is being profiled
+     * @param phase the phase that ended
+     * @param start when the phase started
+     * @return the time now, when the next phase starts, or 0 if the frame is not being profiled
+     */
+    private long lap(boolean profiling, FrameProfiler.Phase phase, long start) {
+        if (!profiling) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        environment.getProfiler().record(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Prints how the game loop's frames were paced, drawn, exported and watched for jank, closing the
+     * exporter and the jank monitor first so that their counts are final.
+     */
+    private void printStatistics() {
+        System.out.println("Frame pacing: " + pacer);
+        System.out.println("Rendering: " + (presenter == null ? "whole frames" : presenter));
+        if (environment.getProfiler().getFrames() > 0) {
+            System.out.println("Profile: " + environment.getProfiler());
+        }
+        if (exporter != null) {
+            exporter.close();
+            System.out.println("Export: " + exporter);
+        }
+        if (jankMonitor != null) {
+            jankMonitor.close();
+            System.out.println("Jank: " + jankMonitor);
+        }
+    }
+
+    /**
+     * Advances the simulation by the given number of ticks, as fast as possible.
+     * Nothing is drawn and nothing sleeps, so this is what headless runs,
+     * soak tests and benchmarks use. Stops early once the game is over.
+     * @param n the number of ticks to run
+     * @return the number of ticks that actually ran
+     */
+    public int step(int n) {
+        int ran = 0;
+        while (ran < n && !isOver()) {
+            long start = metrics != null ? System.nanoTime() : 0;
+            tick();
+            ran++;
+            if (metrics != null) {
+                publish(System.nanoTime() - start);
+            }
         }
+        return ran;
+    }
+
+    /**
+     * Publishes the end of a frame, or of a tick run by step(), to the metrics.
+     * @param nanos the time the frame or tick took
+     */
+    private void publish(long nanos) {
+        PhysicsStats stats = environment.getStats();
+        metrics.publishFrame(nanos, ticks, ballsCounter.getValue(), blocksCounter.getValue(), stats.getQueries(),
+                stats.getCollisions());
+    }
+
+    /**
+     * Advances the simulation by one tick.
+     */
+    private void tick() {
+        this.sprites.notifyAllTimePassed();
+        if (scheduler != null) {
+            scheduler.step();
+        }
+        ticks++;
+    }
+
+    /**
+     * Draws the current frame on the display and shows it, without advancing the simulation.
+     */
+    public void drawFrame() {
+        DrawSurface d = display.getDrawSurface();
+        this.sprites.drawAllOn(d);
+        display.show(d);
+    }
+
+    /**
+     * Checks if the game is over, i.e. all blocks or all balls are gone.
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return blocksCounter.getValue() == 0 || ballsCounter.getValue() == 0;
+    }
+
+    /**
+     * Returns the number of ticks simulated so far.
+     * @return the number of ticks
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of blocks left in the game.
+     * @return the remaining blocks
+     */
+    public int getRemainingBlocks() {
+        return blocksCounter.getValue();
+    }
+
+    /**
+     * Returns the number of balls left in the game.
+     * @return the remaining balls
+     */
+    public int getRemainingBalls() {
+        return ballsCounter.getValue();
+    }
+
+    /**
+     * Returns the current score.
+     * @return the score
+     */
+    public int getScore() {
+        return score.getValue();
+    }
+
+    /**
+     * Gets the display the game is shown on.
+     * @return the display
+     */
+    public Display getDisplay() {
+        return display;
+    }
+
+    /**
+     * Gets the ball system that holds, moves and draws the game's balls.
+     * @return the ball system
+     */
+    public BallSystem getBallSystem() {
+        return balls;
     }
 
     /**
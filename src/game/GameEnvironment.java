@@ -2,32 +2,122 @@ package game;
 
 import Geomtry.Line;
 import Geomtry.Point;
-import Geomtry.Rectangle;
+import Geomtry.Ray;
 import game.collision.CollisionInfo;
 import game.collision.Collidable;
+import game.collision.CollisionCache;
+import game.collision.DynamicAabbTree;
+import game.collision.RayHit;
+import game.collision.UniformGrid;
+import game.listeners.EnvironmentListener;
+import game.metrics.CollisionQueryEvent;
+import game.metrics.FrameProfiler;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * The GameEnvironment class holds a collection of objects a ball can collide with.
+ * Static collidables are indexed in a uniform grid and moving ones in a dynamic AABB tree,
+ * so queries only look at the collidables near the ball instead of all of them.
  */
 public class GameEnvironment {
+    /**
+     * The default grid cell size, the width of a block in the game.
+     */
+    public static final double DEFAULT_CELL_SIZE = 50;
+    /**
+     * How much the boxes of moving collidables are grown, so small moves do not touch the tree.
+     */
+    public static final double DYNAMIC_MARGIN = 10;
+    /**
+     * The largest ball radius the grid is tuned for; bigger balls still collide, only more slowly.
+     */
+    public static final double MAX_BALL_RADIUS = 10;
+    /**
+     * The default number of collisions a ball may resolve in one tick.
+     */
+    public static final int DEFAULT_MAX_SUB_STEPS = 16;
+
     private java.util.List<Collidable> collidables;
+    private Map<Collidable, Integer> slots = new IdentityHashMap<>();
+    private UniformGrid grid;
+    private DynamicAabbTree dynamicTree = new DynamicAabbTree(DYNAMIC_MARGIN);
+    private Map<Collidable, Integer> dynamicProxies = new IdentityHashMap<>();
+    private int maxSubSteps = DEFAULT_MAX_SUB_STEPS;
+    private PhysicsStats stats = new PhysicsStats();
+    private FrameProfiler profiler = new FrameProfiler();
+    private java.util.List<EnvironmentListener> listeners = new java.util.ArrayList<>();
 
     /**
      * Constructor to initialize the collidables list.
      */
     public GameEnvironment() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructor with a given grid cell size.
+     * @param cellSize the width and height of a grid cell
+     */
+    public GameEnvironment(double cellSize) {
         this.collidables = new java.util.ArrayList<>();
+        this.grid = new UniformGrid(cellSize, MAX_BALL_RADIUS);
     }
 
     /**
-     * Adds the given collidable to the environment.
+     * Adds the given collidable to the environment. A collidable already in it is left as it is.
      * @param c the collidable to add
      */
     public void addCollidable(Collidable c) {
         if (c == null) {
             throw new IllegalArgumentException("Collidable cannot be null");
         }
-        collidables.add(c);
+        if (!track(c)) {
+            return;
+        }
+        grid.insert(c);
+        for (EnvironmentListener l : listeners) {
+            l.collidableAdded(c);
+        }
+    }
+
+    /**
+     * Adds a collidable that is expected to move, like the paddle.
+     * It is kept in the dynamic tree instead of the grid. A collidable already in the environment is left as it is.
+     * @param c the collidable to add
+     */
+    public void addDynamicCollidable(Collidable c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Collidable cannot be null");
+        }
+        if (!track(c)) {
+            return;
+        }
+        dynamicProxies.put(c, dynamicTree.insert(c));
+        for (EnvironmentListener l : listeners) {
+            l.collidableAdded(c);
+        }
+    }
+
+    /**
+     * Tells the environment that a collidable changed its collision rectangle.
+     * Collidables that move, like the paddle, call this after every move.
+     * @param c the collidable that moved
+     */
+    public void updateCollidable(Collidable c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Collidable cannot be null");
+        }
+        Integer proxy = dynamicProxies.get(c);
+        if (proxy != null) {
+            dynamicTree.move(proxy);
+        } else {
+            grid.update(c);
+        }
+        for (EnvironmentListener l : listeners) {
+            l.collidableMoved(c);
+        }
     }
 
     /**
@@ -38,41 +128,184 @@ public class GameEnvironment {
      * @return the closest collision info or null if none
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
+        return getClosestCollision(trajectory, 0);
+    }
+
+    /**
+     * Returns the first collision of a circle moving along a trajectory.
+     * The collision point is where the circle touches the collidable and the normal
+     * points out of the collidable's surface at that point.
+     * If no collision will occur, returns null.
+     *
+     * @param trajectory the path of the circle's center
+     * @param radius the radius of the circle
+     * @return the closest collision info or null if none
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, double radius) {
+        return getClosestCollision(trajectory, radius, null);
+    }
+
+    /**
+     * Returns the first collision of a circle moving along a trajectory, using a ball's cache.
+     * While the move stays inside space the cache has proven free, the static collidables are not searched;
+     * moving collidables are always searched.
+     *
+     * @param trajectory the path of the circle's center
+     * @param radius the radius of the circle
+     * @param cache the ball's collision cache, or null to search everything
+     * @return the closest collision info or null if none
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, double radius, CollisionCache cache) {
         if (trajectory == null) {
             throw new IllegalArgumentException("Trajectory cannot be null");
         }
 
-        Point closestPoint = null;
-        Collidable closestCollidable = null;
+        Ray ray = trajectory.ray();
+        RayHit hit = new RayHit();
+        raycast(ray, radius, cache, hit);
+        if (cache != null) {
+            if (cache.isLastQueryCached()) {
+                stats.recordCacheHit();
+            } else {
+                stats.recordCacheMiss();
+            }
+        }
+        if (hit.isHit()) {
+            return new CollisionInfo(new Point(hit.getContactX(), hit.getContactY()), hit.getCollidable(),
+                    hit.getNormalX(), hit.getNormalY(), hit.getT());
+        }
 
-        for (Collidable c : collidables) {
-            Rectangle rect = c.getCollisionRectangle();
-            Point intersectionPoint = trajectory.closestIntersectionToStartOfLine(rect);
+        return null;
+    }
 
-            if (intersectionPoint != null) {
-                if (closestPoint == null
-                        || trajectory.startingPoint().distance(intersectionPoint)
-                        < trajectory.startingPoint().distance(closestPoint)) {
-                    closestPoint = intersectionPoint;
-                    closestCollidable = c;
-                }
-            }
+    /**
+     * Finds the first collision of a circle moving along a ray, filling a reusable result
+     * instead of building a CollisionInfo. This is what loops over many balls use.
+     * A query that searched the static index is counted in the stats, but cache hits and misses are not;
+     * the caller counts them.
+     *
+     * @param ray the path of the circle's center
+     * @param radius the radius of the circle
+     * @param cache the ball's collision cache, or null to search everything
+     * @param hit filled with the closest contact, if there is one
+     * @return true if the circle touches a collidable
+     */
+    public boolean raycast(Ray ray, double radius, CollisionCache cache, RayHit hit) {
+        boolean timed = profiler.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        if (cache == null) {
+            grid.raycast(ray, radius, hit);
+        } else {
+            grid.raycast(ray, radius, hit, cache);
+        }
+        dynamicTree.raycast(ray, radius, hit);
+        if (cache == null || !cache.isLastQueryCached()) {
+            stats.recordQuery();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(radius, hit.getTests(), hit.isHit(), cache != null && cache.isLastQueryCached());
+            event.commit();
         }
+        if (timed) {
+            profiler.addCollisionNanos(System.nanoTime() - start);
+        }
+        return hit.isHit();
+    }
+
+    /**
+     * Returns the number of collisions a ball may resolve in one tick.
+     * Past it, the ball stops where it is for the rest of the tick.
+     * @return the sub-step cap
+     */
+    public int getMaxSubSteps() {
+        return maxSubSteps;
+    }
 
-        if (closestPoint != null && closestCollidable != null) {
-            return new CollisionInfo(closestPoint, closestCollidable);
+    /**
+     * Sets the number of collisions a ball may resolve in one tick.
+     * @param maxSubSteps the sub-step cap, at least 1
+     */
+    public void setMaxSubSteps(int maxSubSteps) {
+        if (maxSubSteps < 1) {
+            throw new IllegalArgumentException("Sub-step cap must be at least 1");
         }
+        this.maxSubSteps = maxSubSteps;
+    }
 
-        return null;
+    /**
+     * Returns the counters of the ball physics running in this environment.
+     * @return the physics stats
+     */
+    public PhysicsStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the profiler the collision queries of this environment and the game loop are timed with.
+     * @return the frame profiler
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Returns a number that changes whenever a static collidable is added or moves.
+     * Collision caches compare it to know when their free space is out of date.
+     * @return the version of the static collidables
+     */
+    public long getVersion() {
+        return grid.getVersion();
     }
+
+    /**
+     * Collects the collidables whose collision rectangle contains a point.
+     * @param p the point
+     * @param out the list to fill; it is cleared first
+     */
+    public void getCollidablesAt(Point p, java.util.List<Collidable> out) {
+        grid.queryPoint(p.getX(), p.getY(), out);
+        dynamicTree.queryPoint(p.getX(), p.getY(), out);
+    }
+
+    /**
+     * Collects the collidables whose collision rectangle overlaps a circle.
+     * @param center the center of the circle
+     * @param radius the radius of the circle
+     * @param out the list to fill; it is cleared first
+     */
+    public void getCollidablesNear(Point center, double radius, java.util.List<Collidable> out) {
+        grid.queryCircle(center.getX(), center.getY(), radius, out);
+        dynamicTree.queryCircle(center.getX(), center.getY(), radius, out);
+    }
+
     /**
      * get the collidables in the environment.
-     * @return the collidables
+     * @return the collidables; removing one moves the last one into its place
      */
     public java.util.List<Collidable> getCollidables() {
         return this.collidables;
     }
 
+    /**
+     * Returns the number of collidables in the environment.
+     * @return the number of collidables
+     */
+    public int getCollidableCount() {
+        return collidables.size();
+    }
+
+    /**
+     * Checks if a collidable is in the environment.
+     * @param c the collidable
+     * @return true if it was added and not removed since
+     */
+    public boolean contains(Collidable c) {
+        return slots.containsKey(c);
+    }
+
     /**
      * Removes the given collidable from the environment.
      * @param c the collidable to remove
@@ -81,6 +314,63 @@ public class GameEnvironment {
         if (c == null) {
             throw new IllegalArgumentException("Collidable cannot be null");
         }
-        collidables.remove(c);
+        untrack(c);
+        Integer proxy = dynamicProxies.remove(c);
+        if (proxy != null) {
+            dynamicTree.remove(proxy);
+        } else {
+            grid.remove(c);
+        }
+        for (EnvironmentListener l : listeners) {
+            l.collidableRemoved(c);
+        }
+    }
+
+    /**
+     * Adds a collidable to the list, remembering its slot. A collidable already in it is not added again.
+     * @param c the collidable
+     * @return true if the collidable was added, false if it was already in the list
+     */
+    private boolean track(Collidable c) {
+        if (slots.putIfAbsent(c, collidables.size()) != null) {
+            return false;
+        }
+        collidables.add(c);
+        return true;
+    }
+
+    /**
+     * Removes a collidable from the list by moving the last one into its slot.
+     * @param c the collidable
+     */
+    private void untrack(Collidable c) {
+        Integer slot = slots.remove(c);
+        if (slot == null) {
+            return;
+        }
+        Collidable last = collidables.remove(collidables.size() - 1);
+        if (last != c) {
+            collidables.set(slot, last);
+            slots.put(last, slot);
+        }
+    }
+
+    /**
+     * Adds a listener that is told whenever a collidable is added, removed or moved.
+     * @param l the listener to add
+     */
+    public void addEnvironmentListener(EnvironmentListener l) {
+        if (l == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(l);
+    }
+
+    /**
+     * Removes an environment listener.
+     * @param l the listener to remove
+     */
+    public void removeEnvironmentListener(EnvironmentListener l) {
+        listeners.remove(l);
     }
 }
@@ -0,0 +1,371 @@
+package game;
+
+import Geomtry.Line;
+import Geomtry.Point;
+import Geomtry.Rectangle;
+import game.collision.Collidable;
+import game.collision.CollisionInfo;
+import game.collision.DynamicAabbTree;
+import game.listeners.EnvironmentListener;
+import game.objects.Ball;
+import game.objects.Velocity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The ImpactScheduler class moves balls event by event instead of tick by tick.
+ * Each ball's next impact is looked up once and kept in a priority queue ordered by time.
+ * Between impacts a ball flies in a straight line and its position is worked out from
+ * the time, so a tick only costs work for the balls that actually hit something.
+ * When a collidable is added, removed or moved, only the balls whose predicted path it
+ * touches are looked up again.
+ */
+public class ImpactScheduler implements EnvironmentListener {
+    /**
+     * How many ticks ahead a ball's path is searched for an impact.
+     * A ball that hits nothing in that time is looked up again when it runs out.
+     */
+    public static final double DEFAULT_HORIZON = 32;
+    /**
+     * How much the boxes of predicted paths are grown in the path tree.
+     */
+    private static final double PATH_MARGIN = 4;
+
+    private GameEnvironment environment;
+    private double horizon;
+    private double time;
+    private long sequence;
+    private PriorityQueue<Impact> queue = new PriorityQueue<>();
+    private Map<Ball, Flight> flights = new IdentityHashMap<>();
+    private Map<Collidable, Set<Flight>> flightsByTarget = new IdentityHashMap<>();
+    private Map<Collidable, Rectangle> lastBounds = new IdentityHashMap<>();
+    private DynamicAabbTree paths = new DynamicAabbTree(PATH_MARGIN);
+    private List<Collidable> found = new ArrayList<>();
+
+    /**
+     * Constructs a scheduler for the balls of an environment.
+     * The caller registers it as a listener of the environment, so it hears of collidables that change.
+     * @param environment the environment the balls collide with
+     */
+    public ImpactScheduler(GameEnvironment environment) {
+        this(environment, DEFAULT_HORIZON);
+    }
+
+    /**
+     * Constructs a scheduler with a given search horizon.
+     * @param environment the environment the balls collide with
+     * @param horizon how many ticks ahead to search for impacts
+     */
+    public ImpactScheduler(GameEnvironment environment, double horizon) {
+        if (environment == null) {
+            throw new IllegalArgumentException("Environment cannot be null");
+        }
+        if (horizon <= 0) {
+            throw new IllegalArgumentException("Horizon must be positive");
+        }
+        this.environment = environment;
+        this.horizon = horizon;
+    }
+
+    /**
+     * Returns the simulation time, in ticks.
+     * @return the current time
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of balls the scheduler moves.
+     * @return the number of balls
+     */
+    public int getBallCount() {
+        return flights.size();
+    }
+
+    /**
+     * Returns the number of events in the queue, including ones that were replaced.
+     * @return the queue size
+     */
+    public int getQueuedEvents() {
+        return queue.size();
+    }
+
+    /**
+     * Starts moving a ball. From now on the ball's position follows the scheduler's time.
+     * @param b the ball to add
+     */
+    public void addBall(Ball b) {
+        if (b == null) {
+            throw new IllegalArgumentException("Ball cannot be null");
+        }
+        if (flights.containsKey(b)) {
+            return;
+        }
+        Flight f = new Flight(b);
+        flights.put(b, f);
+        b.setScheduler(this);
+        schedule(f);
+    }
+
+    /**
+     * Stops moving a ball. The ball keeps the position it has at the current time.
+     * @param b the ball to remove
+     */
+    public void removeBall(Ball b) {
+        Flight f = flights.remove(b);
+        if (f == null) {
+            return;
+        }
+        f.removed = true;
+        f.version++;
+        untarget(f);
+        if (f.proxy >= 0) {
+            paths.remove(f.proxy);
+        }
+        b.setScheduler(null);
+    }
+
+    /**
+     * Looks up the next impact of a ball again, for example after its velocity was changed.
+     * @param b the ball
+     */
+    public void reschedule(Ball b) {
+        Flight f = flights.get(b);
+        if (f != null && !f.resolving) {
+            schedule(f);
+        }
+    }
+
+    /**
+     * Advances the simulation by one tick, resolving every impact that happens in it in time order.
+     * A ball that resolves more impacts in the tick than the environment's sub-step cap
+     * is held where it is until the next tick.
+     */
+    public void step() {
+        double end = time + 1;
+        PhysicsStats stats = environment.getStats();
+        while (!queue.isEmpty() && queue.peek().time < end) {
+            Impact e = queue.poll();
+            Flight f = e.flight;
+            if (e.version != f.version) {
+                continue;
+            }
+            time = e.time;
+            if (e.collision == null) {
+                schedule(f);
+                continue;
+            }
+            if (f.lastTick != end) {
+                f.lastTick = end;
+                f.impactsThisTick = 0;
+            }
+            if (f.impactsThisTick == environment.getMaxSubSteps()) {
+                stats.recordCapHit();
+                f.ball.holdUntil(end);
+                schedule(f);
+                continue;
+            }
+            f.impactsThisTick++;
+            stats.recordCollision();
+            f.version++;
+            untarget(f);
+            f.resolving = true;
+            f.ball.collide(e.collision, e.time);
+            f.resolving = false;
+            if (!f.removed) {
+                schedule(f);
+            }
+        }
+        time = end;
+        if (queue.size() > 4 * flights.size() + 64) {
+            queue.removeIf(e -> e.version != e.flight.version);
+        }
+    }
+
+    @Override
+    public void collidableAdded(Collidable c) {
+        Rectangle r = c.getCollisionRectangle();
+        lastBounds.put(c, r);
+        rescheduleAcross(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), null);
+    }
+
+    @Override
+    public void collidableRemoved(Collidable c) {
+        lastBounds.remove(c);
+        Set<Flight> targeting = flightsByTarget.remove(c);
+        if (targeting == null) {
+            return;
+        }
+        for (Flight f : new ArrayList<>(targeting)) {
+            f.target = null;
+            if (!f.resolving) {
+                schedule(f);
+            }
+        }
+    }
+
+    @Override
+    public void collidableMoved(Collidable c) {
+        Rectangle now = c.getCollisionRectangle();
+        Rectangle before = lastBounds.put(c, now);
+        if (before == null) {
+            before = now;
+        }
+        rescheduleAcross(Math.min(before.getMinX(), now.getMinX()), Math.min(before.getMinY(), now.getMinY()),
+                Math.max(before.getMaxX(), now.getMaxX()), Math.max(before.getMaxY(), now.getMaxY()), c);
+    }
+
+    /**
+     * Looks up again the balls whose predicted path crosses a box, or that were heading for a collidable.
+     * @param x0 the left edge of the box
+     * @param y0 the top edge of the box
+     * @param x1 the right edge of the box
+     * @param y1 the bottom edge of the box
+     * @param target the collidable whose balls are looked up too, or null
+     */
+    private void rescheduleAcross(double x0, double y0, double x1, double y1, Collidable target) {
+        found.clear();
+        paths.queryBox(x0, y0, x1, y1, found);
+        if (target != null && flightsByTarget.containsKey(target)) {
+            found.addAll(flightsByTarget.get(target));
+        }
+        for (Collidable c : new ArrayList<>(found)) {
+            Flight f = (Flight) c;
+            if (!f.resolving && !f.removed) {
+                schedule(f);
+            }
+        }
+    }
+
+    /**
+     * Looks up a ball's next impact and puts it in the queue, replacing the one it had.
+     * @param f the flight of the ball
+     */
+    private void schedule(Flight f) {
+        Ball b = f.ball;
+        double start = Math.max(time, b.getFlightStart());
+        b.advanceTo(start);
+        Point p = b.positionAt(start);
+        Velocity v = b.getVelocity();
+        CollisionInfo collision = null;
+        if (v.getDx() != 0 || v.getDy() != 0) {
+            environment.getStats().recordSubStep();
+            Line trajectory = new Line(p.getX(), p.getY(),
+                    p.getX() + v.getDx() * horizon, p.getY() + v.getDy() * horizon);
+            collision = environment.getClosestCollision(trajectory, b.getSize(), b.getCollisionCache());
+        }
+        double fraction = collision == null ? 1 : collision.timeOfImpact();
+
+        f.version++;
+        untarget(f);
+        if (collision != null) {
+            f.target = collision.collisionObject();
+            flightsByTarget.computeIfAbsent(f.target,
+                    k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(f);
+        }
+        double r = b.getSize();
+        double ex = p.getX() + v.getDx() * horizon * fraction;
+        double ey = p.getY() + v.getDy() * horizon * fraction;
+        f.path = new Rectangle(Math.min(p.getX(), ex) - r, Math.min(p.getY(), ey) - r,
+                Math.abs(ex - p.getX()) + 2 * r, Math.abs(ey - p.getY()) + 2 * r);
+        if (f.proxy < 0) {
+            f.proxy = paths.insert(f);
+        } else {
+            paths.move(f.proxy);
+        }
+        queue.add(new Impact(start + horizon * fraction, sequence++, f, f.version, collision));
+    }
+
+    /**
+     * Forgets the collidable a flight was heading for.
+     * @param f the flight
+     */
+    private void untarget(Flight f) {
+        if (f.target == null) {
+            return;
+        }
+        Set<Flight> targeting = flightsByTarget.get(f.target);
+        if (targeting != null) {
+            targeting.remove(f);
+            if (targeting.isEmpty()) {
+                flightsByTarget.remove(f.target);
+            }
+        }
+        f.target = null;
+    }
+
+    /**
+     * The scheduling state of one ball.
+     * It is kept in the path tree as a collidable whose rectangle covers the ball's predicted path;
+     * nothing ever collides with it.
+     */
+    private static final class Flight implements Collidable {
+        private final Ball ball;
+        private long version;
+        private Collidable target;
+        private Rectangle path;
+        private int proxy = -1;
+        private boolean resolving;
+        private boolean removed;
+        private double lastTick;
+        private int impactsThisTick;
+
+        /**
+         * Constructs the flight of a ball.
+         * @param ball the ball
+         */
+        private Flight(Ball ball) {
+            this.ball = ball;
+        }
+
+        @Override
+        public Rectangle getCollisionRectangle() {
+            return path;
+        }
+
+        @Override
+        public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
+            return currentVelocity;
+        }
+    }
+
+    /**
+     * A predicted impact. Impacts whose version no longer matches their flight were replaced and are skipped.
+     */
+    private static final class Impact implements Comparable<Impact> {
+        private final double time;
+        private final long sequence;
+        private final Flight flight;
+        private final long version;
+        private final CollisionInfo collision;
+
+        /**
+         * Constructs an impact.
+         * @param time the time of the impact, in ticks
+         * @param sequence the order the impact was made in, to break ties
+         * @param flight the flight of the ball
+         * @param version the flight's version when the impact was made
+         * @param collision the collision, or null when the ball only needs to be looked up again
+         */
+        private Impact(double time, long sequence, Flight flight, long version, CollisionInfo collision) {
+            this.time = time;
+            this.sequence = sequence;
+            this.flight = flight;
+            this.version = version;
+            this.collision = collision;
+        }
+
+        @Override
+        public int compareTo(Impact other) {
+            int byTime = Double.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
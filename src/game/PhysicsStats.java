@@ -0,0 +1,173 @@
+package game;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The PhysicsStats class counts what the ball physics did.
+ * The counters only ever grow; take two snapshots and subtract to measure a stretch of ticks.
+ */
+public class PhysicsStats {
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder subSteps = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder capHits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    /**
+     * Records one call to move a ball by a whole tick.
+     */
+    public void recordMove() {
+        moves.increment();
+    }
+
+    /**
+     * Records one collision query made while moving a ball.
+     */
+    public void recordSubStep() {
+        subSteps.increment();
+    }
+
+    /**
+     * Records one collision that was resolved.
+     */
+    public void recordCollision() {
+        collisions.increment();
+    }
+
+    /**
+     * Records a move that ran out of sub-steps before using up the tick.
+     */
+    public void recordCapHit() {
+        capHits.increment();
+    }
+
+    /**
+     * Records a collision query answered from a ball's collision cache.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Records a collision query that had to search the static index.
+     */
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Records one collision query that searched the environment's static index, from any caller.
+     */
+    public void recordQuery() {
+        queries.increment();
+    }
+
+    /**
+     * Adds the counts of a batch of moves at once, so loops over many balls touch the counters once.
+     * @param moveCount the number of moves
+     * @param subStepCount the number of collision queries
+     * @param collisionCount the number of collisions resolved
+     * @param capHitCount the number of moves that hit the sub-step cap
+     * @param cacheHitCount the number of queries answered from a cache
+     * @param cacheMissCount the number of cached queries that searched the index
+     */
+    public void recordBatch(long moveCount, long subStepCount, long collisionCount, long capHitCount,
+                            long cacheHitCount, long cacheMissCount) {
+        moves.add(moveCount);
+        subSteps.add(subStepCount);
+        collisions.add(collisionCount);
+        capHits.add(capHitCount);
+        cacheHits.add(cacheHitCount);
+        cacheMisses.add(cacheMissCount);
+    }
+
+    /**
+     * Returns how many times a ball was moved by a tick.
+     * @return the number of moves
+     */
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * Returns how many collision queries the moves needed.
+     * @return the number of sub-steps
+     */
+    public long getSubSteps() {
+        return subSteps.sum();
+    }
+
+    /**
+     * Returns how many collisions were resolved.
+     * @return the number of collisions
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Returns how many moves hit the sub-step cap and dropped the rest of their motion.
+     * @return the number of cap hits
+     */
+    public long getCapHits() {
+        return capHits.sum();
+    }
+
+    /**
+     * Returns how many collision queries were answered from a ball's cache.
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns how many cached collision queries had to search the static index.
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Returns how many collision queries searched the environment's static index. Queries a ball's cache
+     * answered are not counted.
+     * @return the number of queries
+     */
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * Returns the share of cached collision queries that did not search the static index.
+     * @return the hit rate from 0 to 1, or 0 if there were no cached queries
+     */
+    public double getCacheHitRate() {
+        long h = getCacheHits();
+        long total = h + getCacheMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    public void reset() {
+        moves.reset();
+        subSteps.reset();
+        collisions.reset();
+        capHits.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        queries.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "moves: " + getMoves() + ", sub-steps: " + getSubSteps()
+                + ", collisions: " + getCollisions() + ", cap hits: " + getCapHits()
+                + ", cache hits: " + getCacheHits() + ", cache misses: " + getCacheMisses()
+                + ", queries: " + getQueries();
+    }
+}
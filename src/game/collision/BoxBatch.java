@@ -0,0 +1,108 @@
+package game.collision;
+
+import java.util.Arrays;
+
+/**
+ * BoxBatch keeps the bounds of a list of boxes in four packed arrays, one per edge,
+ * so a whole run of boxes can be tested against a ray without touching the objects they belong to.
+ */
+final class BoxBatch {
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int size;
+
+    /**
+     * Constructor for an empty batch.
+     * @param capacity how many boxes fit before the arrays grow
+     */
+    BoxBatch(int capacity) {
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+    }
+
+    /**
+     * Adds a box at the end of the batch.
+     * @param x0 the left edge
+     * @param y0 the top edge
+     * @param x1 the right edge
+     * @param y1 the bottom edge
+     */
+    void add(double x0, double y0, double x1, double y1) {
+        if (size == minX.length) {
+            int capacity = Math.max(4, size * 2);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        set(size++, x0, y0, x1, y1);
+    }
+
+    /**
+     * Replaces the box at an index.
+     * @param i the index
+     * @param x0 the left edge
+     * @param y0 the top edge
+     * @param x1 the right edge
+     * @param y1 the bottom edge
+     */
+    void set(int i, double x0, double y0, double x1, double y1) {
+        minX[i] = x0;
+        minY[i] = y0;
+        maxX[i] = x1;
+        maxY[i] = y1;
+    }
+
+    /**
+     * Removes the box at an index by moving the last box into its place.
+     * @param i the index
+     */
+    void removeAt(int i) {
+        size--;
+        set(i, minX[size], minY[size], maxX[size], maxY[size]);
+    }
+
+    /**
+     * Returns the number of boxes.
+     * @return the size of the batch
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the left edges. Only the first size() values are boxes.
+     * @return the packed left edges
+     */
+    double[] minX() {
+        return minX;
+    }
+
+    /**
+     * Returns the top edges.
+     * @return the packed top edges
+     */
+    double[] minY() {
+        return minY;
+    }
+
+    /**
+     * Returns the right edges.
+     * @return the packed right edges
+     */
+    double[] maxX() {
+        return maxX;
+    }
+
+    /**
+     * Returns the bottom edges.
+     * @return the packed bottom edges
+     */
+    double[] maxY() {
+        return maxY;
+    }
+}
@@ -1,5 +1,4 @@
 package game.collision;
-import Geomtry.Point;
 import Geomtry.Rectangle;
 import game.objects.Ball;
 import game.objects.Velocity;
@@ -17,13 +16,25 @@ public interface Collidable {
     Rectangle getCollisionRectangle();
 
     /**
-     * Notify the object that we collided with it at collisionPoint
-     * with a given velocity.
+     * Notify the object that we collided with it with a given velocity.
+     * The collision holds the contact point on this object's surface and the surface normal there.
      * @param hitter the ball that is colliding with this object
-     * @param collisionPoint the point of collision
+     * @param collision the collision details
      * @param currentVelocity the current velocity before collision
      * @return the updated velocity after the collision
      */
-    Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+    Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity);
+
+    /**
+     * Work out the velocity after a collision without telling anyone about it.
+     * The parallel physics step uses this while balls move, and calls hit later, in a fixed order,
+     * so listeners run one at a time. It must return what hit would return.
+     * @param collision the collision details
+     * @param currentVelocity the current velocity before collision
+     * @return the updated velocity after the collision
+     */
+    default Velocity bounce(CollisionInfo collision, Velocity currentVelocity) {
+        return collision.reflect(currentVelocity);
+    }
 }
 
@@ -0,0 +1,122 @@
+package game.collision;
+
+/**
+ * A CollisionCache remembers, for one ball, a box that was proven free of static collidables.
+ * A ball moves only a little between queries, so while its whole step stays inside the box
+ * the static index does not need to be searched at all.
+ * The box is tied to a version of the environment and is dropped when collidables are added or moved.
+ * Removing a collidable only makes the box more conservative, so it does not drop the box.
+ */
+public class CollisionCache {
+    private double[] box = new double[4];
+    private boolean valid;
+    private long version;
+    private Collidable lastHit;
+    private long hits;
+    private long misses;
+    private boolean lastQueryCached;
+
+    /**
+     * Checks whether a straight move stays inside the cached free box.
+     * The box is convex, so it is enough that both ends are inside.
+     * @param x0 the x-coordinate of the start
+     * @param y0 the y-coordinate of the start
+     * @param x1 the x-coordinate of the end
+     * @param y1 the y-coordinate of the end
+     * @param currentVersion the environment's current version
+     * @return true if the move stays inside a box that is still valid
+     */
+    public boolean covers(double x0, double y0, double x1, double y1, long currentVersion) {
+        return valid && version == currentVersion
+                && Math.min(x0, x1) >= box[0] && Math.min(y0, y1) >= box[1]
+                && Math.max(x0, x1) <= box[2] && Math.max(y0, y1) <= box[3];
+    }
+
+    /**
+     * Gives the array the free box is written into, so an index can fill it in place.
+     * @return the min x, min y, max x, max y of the box
+     */
+    double[] box() {
+        return box;
+    }
+
+    /**
+     * Marks the box as filled in for a version of the environment.
+     * @param currentVersion the environment's current version
+     */
+    void store(long currentVersion) {
+        this.valid = true;
+        this.version = currentVersion;
+    }
+
+    /**
+     * Marks the box as unusable.
+     */
+    void drop() {
+        this.valid = false;
+    }
+
+    /**
+     * Forgets everything cached, keeping the counters.
+     */
+    public void invalidate() {
+        this.valid = false;
+        this.lastHit = null;
+    }
+
+    /**
+     * Counts a query answered from the cache.
+     */
+    void recordHit() {
+        hits++;
+        lastQueryCached = true;
+    }
+
+    /**
+     * Counts a query that had to search the index.
+     */
+    void recordMiss() {
+        misses++;
+        lastQueryCached = false;
+    }
+
+    /**
+     * Tells whether the last query was answered from the cache.
+     * @return true if the last query did not search the index
+     */
+    public boolean isLastQueryCached() {
+        return lastQueryCached;
+    }
+
+    /**
+     * Remembers the collidable the last query found.
+     * @param c the collidable, or null for no hit
+     */
+    void setLastHit(Collidable c) {
+        this.lastHit = c;
+    }
+
+    /**
+     * Returns the collidable the last searched query found.
+     * @return the collidable, or null if it found nothing
+     */
+    public Collidable getLastHit() {
+        return lastHit;
+    }
+
+    /**
+     * Returns how many queries this cache answered.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns how many queries had to search the index.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
@@ -1,15 +1,20 @@
 package game.collision;
 
 import Geomtry.Point;
+import game.objects.Velocity;
 
 
 /**
  * The CollisionInfo class represents information about a collision event.
- * It contains the point of collision and the collidable object involved in the collision.
+ * It contains the point of collision, the collidable object involved in the collision,
+ * the normal of the surface that was hit and the time of impact.
  */
 public class CollisionInfo {
     private Point collisionPoint;
     private Collidable collisionObject;
+    private double normalX;
+    private double normalY;
+    private double timeOfImpact;
 
     /**
      * Constructs a CollisionInfo object with the specified collision point
@@ -18,12 +23,28 @@ public class CollisionInfo {
      * @param collisionObject the collidable object involved in the collision
      */
     public CollisionInfo(Point collisionPoint, Collidable collisionObject) {
+        this(collisionPoint, collisionObject, 0, 0, 0);
+    }
+
+    /**
+     * Constructs a CollisionInfo object with all the details of the contact.
+     * @param collisionPoint the point on the collidable's surface where the collision occurs
+     * @param collisionObject the collidable object involved in the collision
+     * @param normalX the x part of the unit surface normal, pointing out of the collidable
+     * @param normalY the y part of the unit surface normal, pointing out of the collidable
+     * @param timeOfImpact the fraction of the trajectory travelled before the collision, from 0 to 1
+     */
+    public CollisionInfo(Point collisionPoint, Collidable collisionObject,
+                         double normalX, double normalY, double timeOfImpact) {
         if (collisionPoint == null
                 || collisionObject == null) {
             throw new IllegalArgumentException("Collision point and object cannot be null");
         }
         this.collisionPoint = new Point(collisionPoint.getX(), collisionPoint.getY());
         this.collisionObject = collisionObject;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.timeOfImpact = timeOfImpact;
     }
     /**
      * Returns the point at which the collision occurs.
@@ -48,4 +69,42 @@ public class CollisionInfo {
     public Collidable getCollisionObject() {
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the x part of the surface normal at the collision point.
+     * @return the x part of the normal
+     */
+    public double normalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y part of the surface normal at the collision point.
+     * @return the y part of the normal
+     */
+    public double normalY() {
+        return normalY;
+    }
+
+    /**
+     * Returns the time of impact, as the fraction of the trajectory travelled before the collision.
+     * @return the time of impact, from 0 to 1
+     */
+    public double timeOfImpact() {
+        return timeOfImpact;
+    }
+
+    /**
+     * Reflects a velocity off the surface that was hit.
+     * A velocity that is already moving away from the surface is returned unchanged.
+     * @param v the velocity before the collision
+     * @return the velocity after the collision
+     */
+    public Velocity reflect(Velocity v) {
+        double along = v.getDx() * normalX + v.getDy() * normalY;
+        if (along >= 0) {
+            return v;
+        }
+        return new Velocity(v.getDx() - 2 * along * normalX, v.getDy() - 2 * along * normalY);
+    }
+}
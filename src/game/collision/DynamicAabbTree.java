@@ -0,0 +1,523 @@
+package game.collision;
+
+import Geomtry.Ray;
+import Geomtry.Rectangle;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DynamicAabbTree is a bounding volume tree for collidables that move.
+ * Each leaf keeps a "fat" box: the collision rectangle grown by a margin and stretched
+ * in the direction the collidable last moved. As long as the collidable stays inside
+ * its fat box nothing in the tree changes, so small moves are almost free.
+ * Leaves that do leave their box are removed and inserted again, and the tree is kept
+ * balanced with rotations, like the trees used in physics engines such as Box2D.
+ */
+public class DynamicAabbTree {
+    private static final int NULL = -1;
+    private static final double DISPLACEMENT_MULTIPLIER = 4;
+
+    private double margin;
+    private int root = NULL;
+    private int nodeCount;
+    private int capacity;
+    private int freeList = NULL;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private Collidable[] collidables;
+    private Rectangle[] rectangles;
+
+    /**
+     * Constructor.
+     * @param margin how much each leaf box is grown on every side
+     */
+    public DynamicAabbTree(double margin) {
+        this.margin = margin;
+        allocate(16);
+    }
+
+    /**
+     * Adds a collidable to the tree.
+     * @param c the collidable
+     * @return the proxy id of its leaf, used to move or remove it
+     */
+    public int insert(Collidable c) {
+        int leaf = allocateNode();
+        Rectangle r = c.getCollisionRectangle();
+        collidables[leaf] = c;
+        rectangles[leaf] = r;
+        setBox(leaf, r.getMinX() - margin, r.getMinY() - margin, r.getMaxX() + margin, r.getMaxY() + margin);
+        height[leaf] = 0;
+        insertLeaf(leaf);
+        return leaf;
+    }
+
+    /**
+     * Removes a collidable from the tree.
+     * @param proxy the proxy id returned by insert
+     */
+    public void remove(int proxy) {
+        removeLeaf(proxy);
+        freeNode(proxy);
+    }
+
+    /**
+     * Tells the tree that the collidable of a leaf moved.
+     * The leaf is only re-inserted when its collision rectangle left the fat box.
+     * @param proxy the proxy id returned by insert
+     * @return true if the leaf was re-inserted
+     */
+    public boolean move(int proxy) {
+        Rectangle r = collidables[proxy].getCollisionRectangle();
+        double displacementX = r.getMinX() - rectangles[proxy].getMinX();
+        double displacementY = r.getMinY() - rectangles[proxy].getMinY();
+        rectangles[proxy] = r;
+        if (minX[proxy] <= r.getMinX() && minY[proxy] <= r.getMinY()
+                && maxX[proxy] >= r.getMaxX() && maxY[proxy] >= r.getMaxY()) {
+            return false;
+        }
+        removeLeaf(proxy);
+        double x0 = r.getMinX() - margin;
+        double y0 = r.getMinY() - margin;
+        double x1 = r.getMaxX() + margin;
+        double y1 = r.getMaxY() + margin;
+        // Stretch the box the way the collidable is heading, so it stays inside for longer.
+        double ex = DISPLACEMENT_MULTIPLIER * displacementX;
+        double ey = DISPLACEMENT_MULTIPLIER * displacementY;
+        setBox(proxy, ex < 0 ? x0 + ex : x0, ey < 0 ? y0 + ey : y0, ex > 0 ? x1 + ex : x1, ey > 0 ? y1 + ey : y1);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    /**
+     * Returns the number of leaves in the tree.
+     * @return the number of collidables
+     */
+    public int size() {
+        return (nodeCount + 1) / 2;
+    }
+
+    /**
+     * Returns the height of the tree.
+     * @return the height, 0 for a single leaf
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+
+    /**
+     * Finds the collidable that a circle swept along the ray touches first,
+     * if it is closer than the contact already in hit.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle, 0 for a plain ray
+     * @param hit holds the best contact so far and is updated in place
+     * @return true if the tree improved the hit
+     */
+    public boolean raycast(Ray ray, double radius, RayHit hit) {
+        if (root == NULL) {
+            return false;
+        }
+        Collidable before = hit.getCollidable();
+        double beforeT = hit.getT();
+        raycast(root, ray, radius, hit);
+        return hit.getCollidable() != before || hit.getT() != beforeT;
+    }
+
+    /**
+     * Sweeps a circle into a subtree.
+     * @param node the root of the subtree
+     * @param ray the ray
+     * @param radius the radius of the circle
+     * @param hit the best contact so far
+     */
+    private void raycast(int node, Ray ray, double radius, RayHit hit) {
+        if (!ray.clip(minX[node] - radius, minY[node] - radius, maxX[node] + radius, maxY[node] + radius)
+                || ray.nearT() > hit.getT()) {
+            return;
+        }
+        if (child1[node] == NULL) {
+            Rectangle r = rectangles[node];
+            hit.countTest();
+            double t = ray.sweep(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), radius);
+            if (t < hit.getT()) {
+                hit.set(collidables[node], r, t, ray);
+            }
+            return;
+        }
+        raycast(child1[node], ray, radius, hit);
+        raycast(child2[node], ray, radius, hit);
+    }
+
+    /**
+     * Adds the collidables whose collision rectangle contains a point to a list.
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param out the list to add to
+     */
+    public void queryPoint(double x, double y, List<Collidable> out) {
+        if (root != NULL) {
+            queryCircle(root, x, y, 0, out);
+        }
+    }
+
+    /**
+     * Adds the collidables whose collision rectangle overlaps a circle to a list.
+     * @param x the x-coordinate of the center
+     * @param y the y-coordinate of the center
+     * @param radius the radius
+     * @param out the list to add to
+     */
+    public void queryCircle(double x, double y, double radius, List<Collidable> out) {
+        if (root != NULL) {
+            queryCircle(root, x, y, radius, out);
+        }
+    }
+
+    /**
+     * Collects circle overlaps in a subtree.
+     * @param node the root of the subtree
+     * @param x the x-coordinate of the center
+     * @param y the y-coordinate of the center
+     * @param radius the radius
+     * @param out the list to add to
+     */
+    private void queryCircle(int node, double x, double y, double radius, List<Collidable> out) {
+        if (x + radius < minX[node] || x - radius > maxX[node]
+                || y + radius < minY[node] || y - radius > maxY[node]) {
+            return;
+        }
+        if (child1[node] == NULL) {
+            Rectangle r = rectangles[node];
+            double nx = Math.max(r.getMinX(), Math.min(x, r.getMaxX())) - x;
+            double ny = Math.max(r.getMinY(), Math.min(y, r.getMaxY())) - y;
+            if (nx * nx + ny * ny <= radius * radius) {
+                out.add(collidables[node]);
+            }
+            return;
+        }
+        queryCircle(child1[node], x, y, radius, out);
+        queryCircle(child2[node], x, y, radius, out);
+    }
+
+    /**
+     * Adds the collidables whose collision rectangle overlaps a box to a list.
+     * @param x0 the left edge of the box
+     * @param y0 the top edge of the box
+     * @param x1 the right edge of the box
+     * @param y1 the bottom edge of the box
+     * @param out the list to add to
+     */
+    public void queryBox(double x0, double y0, double x1, double y1, List<Collidable> out) {
+        if (root != NULL) {
+            queryBox(root, x0, y0, x1, y1, out);
+        }
+    }
+
+    /**
+     * Collects box overlaps in a subtree.
+     * @param node the root of the subtree
+     * @param x0 the left edge of the box
+     * @param y0 the top edge of the box
+     * @param x1 the right edge of the box
+     * @param y1 the bottom edge of the box
+     * @param out the list to add to
+     */
+    private void queryBox(int node, double x0, double y0, double x1, double y1, List<Collidable> out) {
+        if (x1 < minX[node] || x0 > maxX[node] || y1 < minY[node] || y0 > maxY[node]) {
+            return;
+        }
+        if (child1[node] == NULL) {
+            Rectangle r = rectangles[node];
+            if (x1 >= r.getMinX() && x0 <= r.getMaxX() && y1 >= r.getMinY() && y0 <= r.getMaxY()) {
+                out.add(collidables[node]);
+            }
+            return;
+        }
+        queryBox(child1[node], x0, y0, x1, y1, out);
+        queryBox(child2[node], x0, y0, x1, y1, out);
+    }
+
+    /**
+     * Inserts a leaf, choosing the sibling that grows the tree's total perimeter the least.
+     * @param leaf the leaf node
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        int index = root;
+        while (child1[index] != NULL) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+            double area = perimeter(index);
+            double combined = unionPerimeter(index, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - area);
+            double cost1 = descendCost(c1, leaf) + inheritance;
+            double cost2 = descendCost(c2, leaf) + inheritance;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        collidables[newParent] = null;
+        rectangles[newParent] = null;
+        setUnion(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    /**
+     * Returns the cost of pushing a leaf down into a child.
+     * @param child the child node
+     * @param leaf the leaf being inserted
+     * @return the cost
+     */
+    private double descendCost(int child, int leaf) {
+        if (child1[child] == NULL) {
+            return unionPerimeter(child, leaf);
+        }
+        return unionPerimeter(child, leaf) - perimeter(child);
+    }
+
+    /**
+     * Removes a leaf from the tree, replacing its parent with its sibling.
+     * @param leaf the leaf node
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    /**
+     * Walks up from a node, balancing and refitting boxes and heights.
+     * @param start the first node to refit
+     */
+    private void refit(int start) {
+        int index = start;
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if a node is out of balance.
+     * @param a the node to balance
+     * @return the node that is now at a's position
+     */
+    private int balance(int a) {
+        if (child1[a] == NULL || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int diff = height[c] - height[b];
+        if (diff > 1) {
+            return rotate(a, c, b);
+        }
+        if (diff < -1) {
+            return rotate(a, b, c);
+        }
+        return a;
+    }
+
+    /**
+     * Rotates the taller child of a up to a's position.
+     * @param a the unbalanced node
+     * @param up the taller child, which takes a's position
+     * @param other the shorter child, which stays under a
+     * @return the node that is now at a's position
+     */
+    private int rotate(int a, int up, int other) {
+        int f = child1[up];
+        int g = child2[up];
+
+        child1[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+        if (parent[up] != NULL) {
+            if (child1[parent[up]] == a) {
+                child1[parent[up]] = up;
+            } else {
+                child2[parent[up]] = up;
+            }
+        } else {
+            root = up;
+        }
+
+        // The taller grandchild stays under up, the shorter one moves under a.
+        int keep = height[f] > height[g] ? f : g;
+        int move = keep == f ? g : f;
+        child2[up] = keep;
+        child1[a] = other;
+        child2[a] = move;
+        parent[move] = a;
+        parent[other] = a;
+        setUnion(a, other, move);
+        height[a] = 1 + Math.max(height[other], height[move]);
+        setUnion(up, a, keep);
+        height[up] = 1 + Math.max(height[a], height[keep]);
+        return up;
+    }
+
+    /**
+     * Sets the box of a node.
+     * @param node the node
+     * @param x0 the left
+     * @param y0 the top
+     * @param x1 the right
+     * @param y1 the bottom
+     */
+    private void setBox(int node, double x0, double y0, double x1, double y1) {
+        minX[node] = x0;
+        minY[node] = y0;
+        maxX[node] = x1;
+        maxY[node] = y1;
+    }
+
+    /**
+     * Sets the box of a node to the union of two other boxes.
+     * @param node the node
+     * @param a the first box
+     * @param b the second box
+     */
+    private void setUnion(int node, int a, int b) {
+        setBox(node, Math.min(minX[a], minX[b]), Math.min(minY[a], minY[b]),
+                Math.max(maxX[a], maxX[b]), Math.max(maxY[a], maxY[b]));
+    }
+
+    /**
+     * Returns the perimeter of a node's box.
+     * @param node the node
+     * @return the perimeter
+     */
+    private double perimeter(int node) {
+        return 2 * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+
+    /**
+     * Returns the perimeter of the union of two boxes.
+     * @param a the first box
+     * @param b the second box
+     * @return the perimeter
+     */
+    private double unionPerimeter(int a, int b) {
+        return 2 * (Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b])
+                + Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]));
+    }
+
+    /**
+     * Takes a node from the free list, growing the arrays if needed.
+     * @return the node
+     */
+    private int allocateNode() {
+        if (freeList == NULL) {
+            int old = capacity;
+            allocate(capacity * 2);
+            for (int i = old; i < capacity - 1; i++) {
+                parent[i] = i + 1;
+            }
+            parent[capacity - 1] = NULL;
+            freeList = old;
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        nodeCount++;
+        return node;
+    }
+
+    /**
+     * Returns a node to the free list.
+     * @param node the node
+     */
+    private void freeNode(int node) {
+        collidables[node] = null;
+        rectangles[node] = null;
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+        nodeCount--;
+    }
+
+    /**
+     * Grows the node arrays.
+     * @param newCapacity the new number of nodes
+     */
+    private void allocate(int newCapacity) {
+        minX = Arrays.copyOf(minX == null ? new double[0] : minX, newCapacity);
+        minY = Arrays.copyOf(minY == null ? new double[0] : minY, newCapacity);
+        maxX = Arrays.copyOf(maxX == null ? new double[0] : maxX, newCapacity);
+        maxY = Arrays.copyOf(maxY == null ? new double[0] : maxY, newCapacity);
+        parent = Arrays.copyOf(parent == null ? new int[0] : parent, newCapacity);
+        child1 = Arrays.copyOf(child1 == null ? new int[0] : child1, newCapacity);
+        child2 = Arrays.copyOf(child2 == null ? new int[0] : child2, newCapacity);
+        height = Arrays.copyOf(height == null ? new int[0] : height, newCapacity);
+        collidables = Arrays.copyOf(collidables == null ? new Collidable[0] : collidables, newCapacity);
+        rectangles = Arrays.copyOf(rectangles == null ? new Rectangle[0] : rectangles, newCapacity);
+        if (capacity == 0) {
+            for (int i = 0; i < newCapacity - 1; i++) {
+                parent[i] = i + 1;
+            }
+            parent[newCapacity - 1] = NULL;
+            freeList = 0;
+        }
+        capacity = newCapacity;
+    }
+}
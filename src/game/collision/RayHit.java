@@ -0,0 +1,136 @@
+package game.collision;
+
+import Geomtry.Ray;
+import Geomtry.Rectangle;
+
+/**
+ * RayHit holds the closest crossing found while casting a ray (or sweeping a circle) into the collidables.
+ * It is filled in place, so a query does not need to build any geometry until it has a winner.
+ */
+public class RayHit {
+    private Collidable collidable;
+    private Rectangle rectangle;
+    private double t = Ray.MISS;
+    private int side = Ray.NONE;
+    private double normalX;
+    private double normalY;
+    private double contactX;
+    private double contactY;
+    private int tests;
+
+    /**
+     * Forgets the current crossing and the number of tests, ready for a new query.
+     */
+    public void clear() {
+        this.tests = 0;
+        this.collidable = null;
+        this.rectangle = null;
+        this.t = Ray.MISS;
+        this.side = Ray.NONE;
+    }
+
+    /**
+     * Records a crossing, taking the side, normal and contact point from the last sweep of the ray.
+     * @param c the collidable that was crossed
+     * @param r its collision rectangle
+     * @param distance the parametric distance along the ray
+     * @param ray the ray that was swept
+     */
+    public void set(Collidable c, Rectangle r, double distance, Ray ray) {
+        this.collidable = c;
+        this.rectangle = r;
+        this.t = distance;
+        this.side = ray.side();
+        this.normalX = ray.normalX();
+        this.normalY = ray.normalY();
+        this.contactX = ray.contactX();
+        this.contactY = ray.contactY();
+    }
+
+    /**
+     * Counts one exact sweep of the ray against a candidate's rectangle.
+     */
+    public void countTest() {
+        tests++;
+    }
+
+    /**
+     * Returns the number of candidates the query swept exactly since it was cleared.
+     * @return the number of tests
+     */
+    public int getTests() {
+        return tests;
+    }
+
+    /**
+     * Checks if a crossing was recorded.
+     * @return true if there is a crossing
+     */
+    public boolean isHit() {
+        return collidable != null;
+    }
+
+    /**
+     * Returns the collidable that was crossed.
+     * @return the collidable
+     */
+    public Collidable getCollidable() {
+        return collidable;
+    }
+
+    /**
+     * Returns the collision rectangle that was crossed.
+     * @return the rectangle
+     */
+    public Rectangle getRectangle() {
+        return rectangle;
+    }
+
+    /**
+     * Returns the parametric distance of the crossing, or Ray.MISS.
+     * @return the distance
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Returns the side that was crossed.
+     * @return one of the Ray side constants, NONE for a corner
+     */
+    public int getSide() {
+        return side;
+    }
+
+    /**
+     * Returns the x part of the surface normal at the contact.
+     * @return the x part of the normal
+     */
+    public double getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y part of the surface normal at the contact.
+     * @return the y part of the normal
+     */
+    public double getNormalY() {
+        return normalY;
+    }
+
+    /**
+     * Returns the x-coordinate of the contact point.
+     * @return the x-coordinate
+     */
+    public double getContactX() {
+        return contactX;
+    }
+
+    /**
+     * Returns the y-coordinate of the contact point.
+     * @return the y-coordinate
+     */
+    public double getContactY() {
+        return contactY;
+    }
+}
@@ -0,0 +1,116 @@
+package game.collision;
+
+import Geomtry.Ray;
+
+/**
+ * SlabFilter picks out, from a batch of boxes, the ones a ray could touch before a given time.
+ * Each box is grown by the radius of the swept circle and clipped against the ray one axis
+ * (slab) at a time; the time the ray enters the grown box is never later than the time the
+ * circle touches the real box, so a box the filter drops can not be hit before that time.
+ * The boxes that pass still need the exact sweep.
+ * This class does the test one box at a time. When the JVM was started with the
+ * jdk.incubator.vector module, get() returns a version that tests several boxes per instruction.
+ */
+class SlabFilter {
+    /**
+     * How far the filter lets rounding go in the ray's favour, in ray time.
+     */
+    static final double SLACK = 1e-9;
+    /**
+     * Setting this system property to false keeps the filter scalar even when the vector module is there.
+     */
+    static final String SIMD_PROPERTY = "pong.simd";
+    private static final SlabFilter INSTANCE = choose();
+
+    /**
+     * Returns the fastest filter this JVM can run.
+     * @return the filter
+     */
+    static SlabFilter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a short name of the filter, for reports.
+     * @return the name
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Tests up to 64 boxes of a batch against a ray.
+     * @param ray the ray, from time 0 to 1
+     * @param grow how much the boxes are grown, the radius of the swept circle
+     * @param maxT boxes the ray enters after this time are dropped
+     * @param boxes the batch
+     * @param from the index of the first box to test
+     * @return a mask where bit i is set if box from + i may be touched
+     */
+    long candidates(Ray ray, double grow, double maxT, BoxBatch boxes, int from) {
+        return scalar(ray, grow, maxT, boxes, from, from, Math.min(boxes.size(), from + Long.SIZE));
+    }
+
+    /**
+     * Tests boxes from start to end, setting their bits relative to from.
+     * @param ray the ray
+     * @param grow how much the boxes are grown
+     * @param maxT boxes the ray enters after this time are dropped
+     * @param boxes the batch
+     * @param from the index of bit 0 of the mask
+     * @param start the first box to test
+     * @param end the index after the last box to test
+     * @return the mask of the boxes that may be touched
+     */
+    static long scalar(Ray ray, double grow, double maxT, BoxBatch boxes, int from, int start, int end) {
+        double x0 = ray.startX();
+        double y0 = ray.startY();
+        double dx = ray.dx();
+        double dy = ray.dy();
+        double[] minX = boxes.minX();
+        double[] minY = boxes.minY();
+        double[] maxX = boxes.maxX();
+        double[] maxY = boxes.maxY();
+        long mask = 0;
+        for (int i = start; i < end; i++) {
+            double near = Double.NEGATIVE_INFINITY;
+            double far = Double.POSITIVE_INFINITY;
+            if (dx != 0) {
+                double t1 = (minX[i] - grow - x0) / dx;
+                double t2 = (maxX[i] + grow - x0) / dx;
+                near = Math.min(t1, t2);
+                far = Math.max(t1, t2);
+            } else if (x0 < minX[i] - grow || x0 > maxX[i] + grow) {
+                continue;
+            }
+            if (dy != 0) {
+                double t1 = (minY[i] - grow - y0) / dy;
+                double t2 = (maxY[i] + grow - y0) / dy;
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            } else if (y0 < minY[i] - grow || y0 > maxY[i] + grow) {
+                continue;
+            }
+            if (near <= far + SLACK && far >= -SLACK && near <= maxT + SLACK) {
+                mask |= 1L << (i - from);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Picks the vector filter if its module is loaded and it was not turned off.
+     * @return the filter to use
+     */
+    private static SlabFilter choose() {
+        if (!Boolean.parseBoolean(System.getProperty(SIMD_PROPERTY, "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new SlabFilter();
+        }
+        try {
+            return new VectorSlabFilter();
+        } catch (LinkageError e) {
+            return new SlabFilter();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package game.collision;
 
 import biuoop.DrawSurface;
 import game.Game;
+import game.display.DirtyRegion;
 
 /**
  * Sprite interface is for every element int the game.
@@ -12,6 +13,41 @@ public interface Sprite {
      * @param d
      */
     void drawOn(DrawSurface d);
+
+    /**
+     * Draws the element between its state before the last tick and its current state.
+     * The game loop runs ticks at a fixed rate and draws at its own, so a frame usually falls
+     * between two ticks. Elements that move override this to draw where they would be;
+     * the rest are drawn as they are.
+     * @param d the surface to draw on
+     * @param alpha how far the frame is past the previous tick, from 0 (the previous state) to 1 (the current one)
+     */
+    default void drawOn(DrawSurface d, double alpha) {
+        drawOn(d);
+    }
+
+    /**
+     * Adds to a frame's damage the areas this sprite draws in that may look different than in the
+     * previous frame. The renderer also draws again the areas reported in earlier frames, so a sprite
+     * that moves reports only where it is drawn now, and a sprite that looks the same reports nothing.
+     * Sprites that can not tell return false, and the whole frame is drawn.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick, as passed to drawOn
+     * @return true if the sprite reported its damage
+     */
+    default boolean reportDamage(DirtyRegion damage, double alpha) {
+        return false;
+    }
+
+    /**
+     * Checks if the sprite's draw calls may be reordered when its frame is recorded: all its fills
+     * first, then its outlines, each grouped by color, together with the sprites next to it that may too.
+     * @return true if the order of the sprite's calls does not show
+     */
+    default boolean isBatchable() {
+        return false;
+    }
+
     /**
      * changes the shape after time passed.
      */
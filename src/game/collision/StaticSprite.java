@@ -0,0 +1,17 @@
+package game.collision;
+
+import Geomtry.Rectangle;
+
+/**
+ * StaticSprite is a sprite that looks the same every frame until it is removed, like a block.
+ * Static sprites are drawn once into an image layer that is then copied to the screen whole,
+ * instead of being drawn again every frame. The layer draws all their fills before their outlines,
+ * except where they overlap by more than an outline, so drawOn should fill first and outline last.
+ */
+public interface StaticSprite extends Sprite {
+    /**
+     * Returns the area the sprite draws in.
+     * @return the bounds of everything drawOn draws
+     */
+    Rectangle getBounds();
+}
@@ -0,0 +1,718 @@
+package game.collision;
+
+import Geomtry.Ray;
+import Geomtry.Rectangle;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UniformGrid is a spatial index of collidables over square cells.
+ * Each collidable is stored in every cell its collision rectangle, grown by a margin, overlaps.
+ * Rays walk only the cells they cross (DDA traversal) and stop at the first confirmed hit,
+ * and point or circle queries only look at the cells around them.
+ * Because of the margin, a circle swept along a ray with a radius up to the margin is found
+ * by the same walk.
+ * The grid grows on its own when a collidable is added outside of it.
+ * Each cell also keeps the bounds of its collidables in packed arrays, so crowded cells,
+ * like the ones along a wall of blocks, can be filtered in batches.
+ */
+public class UniformGrid {
+    // Rectangles are binned slightly larger than they are, so a crossing that lands exactly on
+    // a cell boundary is found from either side despite rounding.
+    private static final double EPSILON = 1e-7;
+    /**
+     * How many cells a cached free box may grow in each direction.
+     */
+    private static final int CACHE_REACH = 4;
+    /**
+     * Cells holding at least this many collidables are first narrowed down by the slab filter,
+     * which tests their packed bounds several at a time, before the exact sweep.
+     */
+    private static final int DENSE_CELL = 8;
+    private static final SlabFilter FILTER = SlabFilter.get();
+
+    private double cellSize;
+    private double margin;
+    private double padding;
+    private double originX;
+    private double originY;
+    private int columns;
+    private int rows;
+    private Cell[] cells;
+    private Map<Collidable, Entry> entries = new IdentityHashMap<>();
+    private long version;
+
+    /**
+     * Constructor for an empty grid.
+     * @param cellSize the width and height of each cell
+     * @param margin how much collision rectangles are grown when binned, the largest radius
+     *               that sweeps find by walking the ray's cells
+     */
+    public UniformGrid(double cellSize, double margin) {
+        if (cellSize <= 0 || margin < 0) {
+            throw new IllegalArgumentException("Cell size must be positive and margin not negative");
+        }
+        this.cellSize = cellSize;
+        this.margin = margin;
+        this.padding = margin + EPSILON;
+        this.cells = new Cell[0];
+    }
+
+    /**
+     * Adds a collidable to every cell its collision rectangle overlaps.
+     * @param c the collidable to add
+     */
+    public void insert(Collidable c) {
+        Rectangle r = c.getCollisionRectangle();
+        ensureCovers(r);
+        Entry e = new Entry(c, r);
+        entries.put(c, e);
+        link(e);
+        version++;
+    }
+
+    /**
+     * Removes a collidable from the grid.
+     * @param c the collidable to remove
+     * @return true if the collidable was in the grid
+     */
+    public boolean remove(Collidable c) {
+        Entry e = entries.remove(c);
+        if (e == null) {
+            return false;
+        }
+        unlink(e);
+        return true;
+    }
+
+    /**
+     * Moves a collidable to the cells of its current collision rectangle.
+     * Only the cells it left and entered are touched.
+     * @param c the collidable that moved
+     */
+    public void update(Collidable c) {
+        Entry e = entries.get(c);
+        if (e == null) {
+            return;
+        }
+        Rectangle r = c.getCollisionRectangle();
+        if (r == e.bounds) {
+            return;
+        }
+        version++;
+        if (!covers(r)) {
+            unlink(e);
+            e.bounds = r;
+            // Growing the grid links every entry again, this one included, at its new bounds.
+            ensureCovers(r);
+            assert isLinkedOnce(e) : "Collidable linked more than once after the grid grew";
+            return;
+        }
+        int c0 = column(r.getMinX() - padding);
+        int r0 = row(r.getMinY() - padding);
+        int c1 = column(r.getMaxX() + padding);
+        int r1 = row(r.getMaxY() + padding);
+        e.bounds = r;
+        for (int y = Math.max(r0, e.r0); y <= Math.min(r1, e.r1); y++) {
+            for (int x = Math.max(c0, e.c0); x <= Math.min(c1, e.c1); x++) {
+                cells[y * columns + x].refresh(e);
+            }
+        }
+        if (c0 == e.c0 && r0 == e.r0 && c1 == e.c1 && r1 == e.r1) {
+            return;
+        }
+        for (int y = e.r0; y <= e.r1; y++) {
+            for (int x = e.c0; x <= e.c1; x++) {
+                if (x < c0 || x > c1 || y < r0 || y > r1) {
+                    cells[y * columns + x].remove(e);
+                }
+            }
+        }
+        for (int y = r0; y <= r1; y++) {
+            for (int x = c0; x <= c1; x++) {
+                if (x < e.c0 || x > e.c1 || y < e.r0 || y > e.r1) {
+                    cell(x, y).add(e);
+                }
+            }
+        }
+        e.c0 = c0;
+        e.r0 = r0;
+        e.c1 = c1;
+        e.r1 = r1;
+    }
+
+    /**
+     * Returns a number that changes whenever a collidable is added or moves.
+     * Removals do not change it, since they only free up space.
+     * @return the grid's version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of collidables in the grid.
+     * @return the number of collidables
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Like raycast, but first checks a ball's cache of free space.
+     * When the whole sweep stays inside the cached free box the grid is not searched.
+     * Otherwise the grid is searched and the box is rebuilt around the start of the ray.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle, 0 for a plain ray
+     * @param hit filled with the closest contact, if there is one
+     * @param cache the ball's cache
+     * @return true if the circle touches a collidable
+     */
+    public boolean raycast(Ray ray, double radius, RayHit hit, CollisionCache cache) {
+        double x0 = ray.startX();
+        double y0 = ray.startY();
+        if (radius <= margin && cache.covers(x0, y0, x0 + ray.dx(), y0 + ray.dy(), version)) {
+            cache.recordHit();
+            hit.clear();
+            return false;
+        }
+        cache.recordMiss();
+        boolean found = raycast(ray, radius, hit);
+        cache.setLastHit(found ? hit.getCollidable() : null);
+        if (radius <= margin && freeBox(x0, y0, CACHE_REACH, cache.box())) {
+            cache.store(version);
+        } else {
+            cache.drop();
+        }
+        return found;
+    }
+
+    /**
+     * Finds the collidable that a circle swept along the ray touches first.
+     * Cells are visited in the order the ray crosses them, and the walk stops in the first
+     * cell that holds a contact, since nothing in a later cell can be closer.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle, 0 for a plain ray
+     * @param hit filled with the closest contact, if there is one
+     * @return true if the circle touches a collidable
+     */
+    public boolean raycast(Ray ray, double radius, RayHit hit) {
+        hit.clear();
+        if (entries.isEmpty()) {
+            return false;
+        }
+        if (radius > padding) {
+            return sweepCells(ray, radius, hit);
+        }
+        if (!ray.clip(originX, originY, originX + columns * cellSize, originY + rows * cellSize)) {
+            return false;
+        }
+        double tStart = Math.max(0, ray.nearT());
+        double tEnd = Math.min(1, ray.farT());
+        double dx = ray.dx();
+        double dy = ray.dy();
+
+        int cx = clamp(column(ray.x(tStart)), columns);
+        int cy = clamp(row(ray.y(tStart)), rows);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+        double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY
+                : (originX + (cx + (dx > 0 ? 1 : 0)) * cellSize - ray.startX()) / dx;
+        double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY
+                : (originY + (cy + (dy > 0 ? 1 : 0)) * cellSize - ray.startY()) / dy;
+
+        while (true) {
+            double cellExit = Math.min(Math.min(tMaxX, tMaxY), tEnd);
+            Cell cell = cells[cy * columns + cx];
+            if (cell != null) {
+                if (cell.size >= DENSE_CELL) {
+                    sweepDense(ray, radius, cell, cellExit, hit);
+                } else {
+                    for (int i = 0; i < cell.size; i++) {
+                        sweepEntry(ray, radius, cell.items[i], cellExit, hit);
+                    }
+                }
+                if (hit.isHit()) {
+                    return true;
+                }
+            }
+            if (cellExit >= tEnd) {
+                return false;
+            }
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+                if (cx < 0 || cx >= columns) {
+                    return false;
+                }
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+                if (cy < 0 || cy >= rows) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sweeps the entries of a crowded cell, running the exact sweep only on the ones the slab
+     * filter lets through.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle
+     * @param cell the cell
+     * @param cellExit the time the ray leaves the cell
+     * @param hit the closest contact so far, updated if a closer one is found
+     */
+    private void sweepDense(Ray ray, double radius, Cell cell, double cellExit, RayHit hit) {
+        for (int from = 0; from < cell.size; from += Long.SIZE) {
+            long mask = FILTER.candidates(ray, radius + EPSILON, Math.min(cellExit, hit.getT()), cell.boxes, from);
+            while (mask != 0) {
+                sweepEntry(ray, radius, cell.items[from + Long.numberOfTrailingZeros(mask)], cellExit, hit);
+                mask &= mask - 1;
+            }
+        }
+    }
+
+    /**
+     * Sweeps one entry of the cell the ray is in.
+     * A contact beyond this cell is found again, in order, in a later cell, so it is ignored here.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle
+     * @param e the entry
+     * @param cellExit the time the ray leaves the cell
+     * @param hit the closest contact so far, updated if a closer one is found
+     */
+    private static void sweepEntry(Ray ray, double radius, Entry e, double cellExit, RayHit hit) {
+        Rectangle r = e.bounds;
+        hit.countTest();
+        double t = ray.sweep(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), radius);
+        if (t <= cellExit && t < hit.getT()) {
+            hit.set(e.collidable, r, t, ray);
+        }
+    }
+
+    /**
+     * Returns the name of the slab filter crowded cells go through, "scalar" or "vector" with its width.
+     * @return the filter's name
+     */
+    public static String getFilterName() {
+        return FILTER.name();
+    }
+
+    /**
+     * Sweeps a circle that is wider than the margin by testing every cell of the swept box.
+     * @param ray the ray to sweep along
+     * @param radius the radius of the circle
+     * @param hit filled with the closest contact, if there is one
+     * @return true if the circle touches a collidable
+     */
+    private boolean sweepCells(Ray ray, double radius, RayHit hit) {
+        double x0 = ray.startX();
+        double y0 = ray.startY();
+        double x1 = x0 + ray.dx();
+        double y1 = y0 + ray.dy();
+        int c0 = clamp(column(Math.min(x0, x1) - radius), columns);
+        int r0 = clamp(row(Math.min(y0, y1) - radius), rows);
+        int c1 = clamp(column(Math.max(x0, x1) + radius), columns);
+        int r1 = clamp(row(Math.max(y0, y1) + radius), rows);
+        for (int cy = r0; cy <= r1; cy++) {
+            for (int cx = c0; cx <= c1; cx++) {
+                Cell cell = cells[cy * columns + cx];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    if (cx != Math.max(c0, e.c0) || cy != Math.max(r0, e.r0)) {
+                        continue;
+                    }
+                    Rectangle r = e.bounds;
+                    hit.countTest();
+                    double t = ray.sweep(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), radius);
+                    if (t < hit.getT()) {
+                        hit.set(e.collidable, r, t, ray);
+                    }
+                }
+            }
+        }
+        return hit.isHit();
+    }
+
+    /**
+     * Returns how much collision rectangles are grown when binned.
+     * @return the margin the grid was built with
+     */
+    public double getMargin() {
+        return margin;
+    }
+
+    /**
+     * Finds a box of empty cells around a point.
+     * No collidable comes within the margin of an empty cell, so a circle no bigger than the margin
+     * can move anywhere inside the box without touching one. The box starts at the point's cell
+     * and grows a row or column at a time while the new row or column is empty.
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param reach how many cells the box may grow in each direction
+     * @param out filled with the box as min x, min y, max x, max y
+     * @return true if the point's cell is empty, false if there is no box and out is unchanged
+     */
+    public boolean freeBox(double x, double y, int reach, double[] out) {
+        if (!inside(x, y)) {
+            return false;
+        }
+        int c = column(x);
+        int r = row(y);
+        if (!empty(c, c, r, r)) {
+            return false;
+        }
+        int c0 = c;
+        int c1 = c;
+        int r0 = r;
+        int r1 = r;
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            if (c0 > 0 && c - c0 < reach && empty(c0 - 1, c0 - 1, r0, r1)) {
+                c0--;
+                grew = true;
+            }
+            if (c1 < columns - 1 && c1 - c < reach && empty(c1 + 1, c1 + 1, r0, r1)) {
+                c1++;
+                grew = true;
+            }
+            if (r0 > 0 && r - r0 < reach && empty(c0, c1, r0 - 1, r0 - 1)) {
+                r0--;
+                grew = true;
+            }
+            if (r1 < rows - 1 && r1 - r < reach && empty(c0, c1, r1 + 1, r1 + 1)) {
+                r1++;
+                grew = true;
+            }
+        }
+        out[0] = originX + c0 * cellSize;
+        out[1] = originY + r0 * cellSize;
+        out[2] = originX + (c1 + 1) * cellSize;
+        out[3] = originY + (r1 + 1) * cellSize;
+        return true;
+    }
+
+    /**
+     * Checks that a range of cells holds no collidables.
+     * @param c0 the first column
+     * @param c1 the last column
+     * @param r0 the first row
+     * @param r1 the last row
+     * @return true if every cell in the range is empty
+     */
+    private boolean empty(int c0, int c1, int r0, int r1) {
+        for (int cy = r0; cy <= r1; cy++) {
+            for (int cx = c0; cx <= c1; cx++) {
+                Cell cell = cells[cy * columns + cx];
+                if (cell != null && cell.size > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the collidables whose collision rectangle contains a point.
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param out the list to fill; it is cleared first
+     */
+    public void queryPoint(double x, double y, List<Collidable> out) {
+        out.clear();
+        if (!inside(x, y)) {
+            return;
+        }
+        Cell cell = cells[row(y) * columns + column(x)];
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size; i++) {
+            Entry e = cell.items[i];
+            if (e.bounds.contains(x, y)) {
+                out.add(e.collidable);
+            }
+        }
+    }
+
+    /**
+     * Collects the collidables whose collision rectangle overlaps a circle.
+     * @param x the x-coordinate of the center
+     * @param y the y-coordinate of the center
+     * @param radius the radius of the circle
+     * @param out the list to fill; it is cleared first
+     */
+    public void queryCircle(double x, double y, double radius, List<Collidable> out) {
+        out.clear();
+        if (columns == 0) {
+            return;
+        }
+        int c0 = clamp(column(x - radius), columns);
+        int r0 = clamp(row(y - radius), rows);
+        int c1 = clamp(column(x + radius), columns);
+        int r1 = clamp(row(y + radius), rows);
+        for (int cy = r0; cy <= r1; cy++) {
+            for (int cx = c0; cx <= c1; cx++) {
+                Cell cell = cells[cy * columns + cx];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    // Report each collidable only from the first cell it shares with the query.
+                    if (cx != Math.max(c0, e.c0) || cy != Math.max(r0, e.r0)) {
+                        continue;
+                    }
+                    Rectangle r = e.bounds;
+                    double nx = Math.max(r.getMinX(), Math.min(x, r.getMaxX())) - x;
+                    double ny = Math.max(r.getMinY(), Math.min(y, r.getMaxY())) - y;
+                    if (nx * nx + ny * ny <= radius * radius) {
+                        out.add(e.collidable);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the cells of its bounds.
+     * @param e the entry
+     */
+    private void link(Entry e) {
+        Rectangle r = e.bounds;
+        e.c0 = column(r.getMinX() - padding);
+        e.r0 = row(r.getMinY() - padding);
+        e.c1 = column(r.getMaxX() + padding);
+        e.r1 = row(r.getMaxY() + padding);
+        for (int y = e.r0; y <= e.r1; y++) {
+            for (int x = e.c0; x <= e.c1; x++) {
+                cell(x, y).add(e);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from the cells it is in.
+     * @param e the entry
+     */
+    private void unlink(Entry e) {
+        for (int y = e.r0; y <= e.r1; y++) {
+            for (int x = e.c0; x <= e.c1; x++) {
+                cells[y * columns + x].remove(e);
+            }
+        }
+    }
+
+    /**
+     * Checks that an entry is in each of its cells exactly once.
+     * @param e the entry
+     * @return true if it is
+     */
+    private boolean isLinkedOnce(Entry e) {
+        for (int y = e.r0; y <= e.r1; y++) {
+            for (int x = e.c0; x <= e.c1; x++) {
+                Cell cell = cells[y * columns + x];
+                if (cell == null || cell.count(e) != 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a cell, creating it if needed.
+     * @param x the column
+     * @param y the row
+     * @return the cell
+     */
+    private Cell cell(int x, int y) {
+        int index = y * columns + x;
+        if (cells[index] == null) {
+            cells[index] = new Cell();
+        }
+        return cells[index];
+    }
+
+    /**
+     * Checks if the grid covers a rectangle.
+     * @param r the rectangle
+     * @return true if it is covered
+     */
+    private boolean covers(Rectangle r) {
+        return columns > 0
+                && r.getMinX() - padding >= originX && r.getMinY() - padding >= originY
+                && r.getMaxX() + padding < originX + columns * cellSize
+                && r.getMaxY() + padding < originY + rows * cellSize;
+    }
+
+    /**
+     * Checks if a point is inside the grid.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if it is inside
+     */
+    private boolean inside(double x, double y) {
+        return columns > 0 && x >= originX && y >= originY
+                && x < originX + columns * cellSize && y < originY + rows * cellSize;
+    }
+
+    /**
+     * Grows the grid so it covers a rectangle.
+     * The grid at least doubles in the direction it grows, so filling it is linear overall.
+     * @param r the rectangle to cover
+     */
+    private void ensureCovers(Rectangle r) {
+        if (covers(r)) {
+            return;
+        }
+        double minX = Math.floor((r.getMinX() - padding) / cellSize) * cellSize;
+        double minY = Math.floor((r.getMinY() - padding) / cellSize) * cellSize;
+        double maxX = minX + cellSize * Math.floor((r.getMaxX() + padding - minX) / cellSize + 1);
+        double maxY = minY + cellSize * Math.floor((r.getMaxY() + padding - minY) / cellSize + 1);
+        if (columns > 0) {
+            double oldMaxX = originX + columns * cellSize;
+            double oldMaxY = originY + rows * cellSize;
+            double width = oldMaxX - originX;
+            double height = oldMaxY - originY;
+            minX = minX < originX ? Math.min(minX, originX - width) : originX;
+            minY = minY < originY ? Math.min(minY, originY - height) : originY;
+            maxX = maxX > oldMaxX ? Math.max(maxX, oldMaxX + width) : oldMaxX;
+            maxY = maxY > oldMaxY ? Math.max(maxY, oldMaxY + height) : oldMaxY;
+        }
+        originX = minX;
+        originY = minY;
+        columns = (int) Math.round((maxX - minX) / cellSize);
+        rows = (int) Math.round((maxY - minY) / cellSize);
+        cells = new Cell[columns * rows];
+        for (Entry e : entries.values()) {
+            link(e);
+        }
+    }
+
+    /**
+     * Returns the column of an x-coordinate.
+     * @param x the x-coordinate
+     * @return the column
+     */
+    private int column(double x) {
+        return (int) Math.floor((x - originX) / cellSize);
+    }
+
+    /**
+     * Returns the row of a y-coordinate.
+     * @param y the y-coordinate
+     * @return the row
+     */
+    private int row(double y) {
+        return (int) Math.floor((y - originY) / cellSize);
+    }
+
+    /**
+     * Clamps an index into [0, size).
+     * @param index the index
+     * @param size the number of cells
+     * @return the clamped index
+     */
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * A collidable in the grid, with the rectangle and the cell range it was stored under.
+     */
+    private static final class Entry {
+        private Collidable collidable;
+        private Rectangle bounds;
+        private int c0;
+        private int r0;
+        private int c1;
+        private int r1;
+
+        /**
+         * Constructor.
+         * @param collidable the collidable
+         * @param bounds its collision rectangle
+         */
+        Entry(Collidable collidable, Rectangle bounds) {
+            this.collidable = collidable;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * The entries stored in one cell, with their bounds packed in the same order.
+     */
+    private static final class Cell {
+        private Entry[] items = new Entry[4];
+        private BoxBatch boxes = new BoxBatch(4);
+        private int size;
+
+        /**
+         * Adds an entry.
+         * @param e the entry
+         */
+        void add(Entry e) {
+            if (size == items.length) {
+                items = java.util.Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = e;
+            Rectangle r = e.bounds;
+            boxes.add(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+        }
+
+        /**
+         * Copies an entry's current bounds into the packed arrays.
+         * @param e the entry
+         */
+        void refresh(Entry e) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == e) {
+                    Rectangle r = e.bounds;
+                    boxes.set(i, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Counts how many times an entry is in the cell.
+         * @param e the entry
+         * @return the count
+         */
+        int count(Entry e) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (items[i] == e) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Removes an entry by swapping the last one into its place.
+         * @param e the entry
+         */
+        void remove(Entry e) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == e) {
+                    items[i] = items[--size];
+                    items[size] = null;
+                    boxes.removeAt(i);
+                    return;
+                }
+            }
+        }
+    }
+}
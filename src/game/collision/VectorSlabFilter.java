@@ -0,0 +1,61 @@
+package game.collision;
+
+import Geomtry.Ray;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorSlabFilter runs the slab test of SlabFilter on as many boxes at once as the CPU's
+ * widest vector holds, four doubles with AVX2 and eight with AVX-512.
+ * It needs the jdk.incubator.vector module, and is only loaded by SlabFilter.get() when that
+ * module is there. Rays parallel to an axis and the boxes left over after the last full vector
+ * go through the scalar test.
+ */
+final class VectorSlabFilter extends SlabFilter {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    String name() {
+        return "vector x" + SPECIES.length();
+    }
+
+    @Override
+    long candidates(Ray ray, double grow, double maxT, BoxBatch boxes, int from) {
+        int end = Math.min(boxes.size(), from + Long.SIZE);
+        double dx = ray.dx();
+        double dy = ray.dy();
+        if (dx == 0 || dy == 0) {
+            return scalar(ray, grow, maxT, boxes, from, from, end);
+        }
+        double invDx = 1 / dx;
+        double invDy = 1 / dy;
+        // Growing the boxes is folded into the ray's start: (min - grow - x0) is (min - (x0 + grow)).
+        double lowX = ray.startX() + grow;
+        double highX = ray.startX() - grow;
+        double lowY = ray.startY() + grow;
+        double highY = ray.startY() - grow;
+        double[] minX = boxes.minX();
+        double[] minY = boxes.minY();
+        double[] maxX = boxes.maxX();
+        double[] maxY = boxes.maxY();
+        int lanes = SPECIES.length();
+        int bound = from + SPECIES.loopBound(end - from);
+        long mask = 0;
+        int i = from;
+        for (; i < bound; i += lanes) {
+            DoubleVector x1 = DoubleVector.fromArray(SPECIES, minX, i).sub(lowX).mul(invDx);
+            DoubleVector x2 = DoubleVector.fromArray(SPECIES, maxX, i).sub(highX).mul(invDx);
+            DoubleVector y1 = DoubleVector.fromArray(SPECIES, minY, i).sub(lowY).mul(invDy);
+            DoubleVector y2 = DoubleVector.fromArray(SPECIES, maxY, i).sub(highY).mul(invDy);
+            DoubleVector near = x1.min(x2).max(y1.min(y2));
+            DoubleVector far = x1.max(x2).min(y1.max(y2));
+            VectorMask<Double> hit = near.compare(VectorOperators.LE, far.add(SLACK))
+                    .and(far.compare(VectorOperators.GE, -SLACK))
+                    .and(near.compare(VectorOperators.LE, maxT + SLACK));
+            mask |= hit.toLong() << (i - from);
+        }
+        return mask | scalar(ray, grow, maxT, boxes, from, i, end);
+    }
+}
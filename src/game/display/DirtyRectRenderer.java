@@ -0,0 +1,185 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DirtyRectRenderer puts recorded frames on a surface, drawing only the parts that changed.
+ * Frames are drawn into back images that persist between frames. Each frame, only the region
+ * the sprites reported as changed, together with the regions of the frames since the image was
+ * last drawn, is cleared and drawn again, one rectangle at a time and only with the calls that reach it;
+ * the image is then shown with one drawImage.
+ * Two images are used in turn, so the one the display may still be painting is not touched.
+ * The whole frame is drawn when a sprite could not report its damage, when frames were skipped,
+ * and when the region covers more than half of the frame or breaks into too many rectangles,
+ * where drawing only part of it no longer pays.
+ */
+public class DirtyRectRenderer {
+    /**
+     * The color behind everything, the background of a Swing panel.
+     */
+    public static final Color DEFAULT_BACKGROUND = new Color(238, 238, 238);
+    /**
+     * Above this fraction of the frame, the whole frame is drawn.
+     */
+    public static final double FULL_REDRAW_COVERAGE = 0.5;
+    /**
+     * Above this number of rectangles, the whole frame is drawn: each rectangle walks the frame's calls.
+     */
+    public static final int FULL_REDRAW_RECTANGLES = 48;
+    private static final int IMAGES = 2;
+
+    private Color background;
+    private BufferedImage[] images = new BufferedImage[IMAGES];
+    private ImageDrawSurface[] surfaces = new ImageDrawSurface[IMAGES];
+    private boolean[] stale = new boolean[IMAGES];
+    private DirtyRegion[] history = new DirtyRegion[IMAGES];
+    private DirtyRegion region;
+    private int next;
+    private long lastSequence = -1;
+    private long frames;
+    private long fullRedraws;
+    private long pixelsDrawn;
+    private long lastPixels;
+
+    /**
+     * Constructor for a renderer with the default background.
+     */
+    public DirtyRectRenderer() {
+        this(DEFAULT_BACKGROUND);
+    }
+
+    /**
+     * Constructor.
+     * @param background the color drawn behind the sprites
+     */
+    public DirtyRectRenderer(Color background) {
+        if (background == null) {
+            throw new IllegalArgumentException("Background cannot be null");
+        }
+        this.background = background;
+    }
+
+    /**
+     * Draws a frame into the next back image and shows that image on a surface.
+     * @param frame the recorded frame, with its damage
+     * @param target the surface to show it on
+     */
+    public void present(RenderCommandList frame, DrawSurface target) {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        if (images[0] == null || images[0].getWidth() != w || images[0].getHeight() != h) {
+            allocate(w, h);
+        }
+        DirtyRegion damage = frame.getDamage();
+        // Without a complete damage record for this frame, no image can be brought up to date in part.
+        boolean broken = !frame.isDamageKnown() || frame.getSequence() != lastSequence + 1;
+        boolean full = stale[next] || broken;
+        // The image was last drawn IMAGES frames ago; everything the frames since then touched has to be drawn.
+        region.copyFrom(damage);
+        for (DirtyRegion past : history) {
+            region.add(past);
+        }
+        if (!full && region.getCoverage() > FULL_REDRAW_COVERAGE) {
+            full = true;
+        }
+        List<Rectangle> rectangles = full || region.isEmpty() ? null : region.toRectangles();
+        if (rectangles != null && rectangles.size() > FULL_REDRAW_RECTANGLES) {
+            full = true;
+        }
+
+        ImageDrawSurface surface = surfaces[next];
+        if (full) {
+            surface.clip(0, 0, w, h);
+            surface.setColor(background);
+            surface.fillRectangle(0, 0, w, h);
+            frame.replay(surface);
+            fullRedraws++;
+            lastPixels = (long) w * h;
+            if (broken) {
+                Arrays.fill(stale, true);
+            }
+        } else if (rectangles != null) {
+            // Each rectangle is drawn on its own: under a clip that is not a rectangle, Java2D
+            // rasterizes ovals a little differently, and the images would no longer match a full redraw.
+            for (Rectangle r : rectangles) {
+                surface.clip(r.x, r.y, r.width, r.height);
+                surface.setColor(background);
+                surface.fillRectangle(r.x, r.y, r.width, r.height);
+                frame.replay(surface, r.x, r.y, r.width, r.height);
+            }
+            lastPixels = region.getPixels();
+        } else {
+            lastPixels = 0;
+        }
+        stale[next] = false;
+        history[(int) (frame.getSequence() % IMAGES)].copyFrom(damage);
+        lastSequence = frame.getSequence();
+        frames++;
+        pixelsDrawn += lastPixels;
+
+        target.drawImage(0, 0, images[next]);
+        next = (next + 1) % IMAGES;
+    }
+
+    /**
+     * Returns the number of pixels drawn for the last frame, not counting the final drawImage.
+     * @return the pixels drawn
+     */
+    public long getLastPixels() {
+        return lastPixels;
+    }
+
+    /**
+     * Returns the average number of pixels drawn per frame.
+     * @return the mean pixels per frame
+     */
+    public double getMeanPixels() {
+        return frames == 0 ? 0 : (double) pixelsDrawn / frames;
+    }
+
+    /**
+     * Returns the number of frames presented.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of frames that were drawn whole.
+     * @return the number of full redraws
+     */
+    public long getFullRedraws() {
+        return fullRedraws;
+    }
+
+    @Override
+    public String toString() {
+        return "frames: " + frames + ", full redraws: " + fullRedraws
+                + ", mean pixels drawn: " + Math.round(getMeanPixels());
+    }
+
+    /**
+     * Makes the back images and regions for a frame size. Every image starts out stale.
+     * @param w the width
+     * @param h the height
+     */
+    private void allocate(int w, int h) {
+        for (int i = 0; i < IMAGES; i++) {
+            if (surfaces[i] != null) {
+                surfaces[i].dispose();
+            }
+            images[i] = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            surfaces[i] = new ImageDrawSurface(images[i]);
+            stale[i] = true;
+            history[i] = new DirtyRegion(w, h);
+        }
+        region = new DirtyRegion(w, h);
+    }
+}
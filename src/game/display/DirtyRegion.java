@@ -0,0 +1,201 @@
+package game.display;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DirtyRegion is the part of a frame that has to be drawn again, kept as a mask of square tiles.
+ * Rectangles are rounded out to whole tiles, so any number of them costs the same to combine,
+ * and the region's size in pixels is known at any time.
+ */
+public class DirtyRegion {
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE = 16;
+
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+    private final boolean[] tiles;
+    private int marked;
+    private long pixels;
+
+    /**
+     * Constructor for an empty region of a surface.
+     * @param width the width of the surface
+     * @param height the height of the surface
+     */
+    public DirtyRegion(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.columns = (width + TILE - 1) / TILE;
+        this.rows = (height + TILE - 1) / TILE;
+        this.tiles = new boolean[columns * rows];
+    }
+
+    /**
+     * Empties the region.
+     */
+    public void reset() {
+        Arrays.fill(tiles, false);
+        marked = 0;
+        pixels = 0;
+    }
+
+    /**
+     * Adds a rectangle to the region. The parts outside the surface are ignored.
+     * @param x the left edge
+     * @param y the top edge
+     * @param w the width
+     * @param h the height
+     */
+    public void add(double x, double y, double w, double h) {
+        int c0 = Math.max(0, (int) Math.floor(x / TILE));
+        int r0 = Math.max(0, (int) Math.floor(y / TILE));
+        int c1 = Math.min(columns - 1, (int) Math.floor((x + w) / TILE));
+        int r1 = Math.min(rows - 1, (int) Math.floor((y + h) / TILE));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                mark(r * columns + c);
+            }
+        }
+    }
+
+    /**
+     * Adds the whole surface to the region.
+     */
+    public void addAll() {
+        for (int i = 0; i < tiles.length; i++) {
+            mark(i);
+        }
+    }
+
+    /**
+     * Adds another region of a surface of the same size to this one.
+     * @param other the other region
+     */
+    public void add(DirtyRegion other) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (other.tiles[i]) {
+                mark(i);
+            }
+        }
+    }
+
+    /**
+     * Makes this region the same as another one of the same size.
+     * @param other the other region
+     */
+    public void copyFrom(DirtyRegion other) {
+        System.arraycopy(other.tiles, 0, tiles, 0, tiles.length);
+        marked = other.marked;
+        pixels = other.pixels;
+    }
+
+    /**
+     * Checks if the region is empty.
+     * @return true if nothing has to be drawn
+     */
+    public boolean isEmpty() {
+        return marked == 0;
+    }
+
+    /**
+     * Returns the number of pixels in the region.
+     * @return the area of the region
+     */
+    public long getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns how much of the surface the region covers.
+     * @return the covered fraction, from 0 to 1
+     */
+    public double getCoverage() {
+        return (double) pixels / ((long) width * height);
+    }
+
+    /**
+     * Returns the width of the surface.
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the surface.
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the region as rectangles that do not overlap. Each run of tiles in a row is a rectangle,
+     * and runs that span the same columns in rows one under the other are joined into one.
+     * @return the region's rectangles
+     */
+    public List<Rectangle> toRectangles() {
+        List<Rectangle> result = new ArrayList<>();
+        List<Rectangle> above = new ArrayList<>();
+        List<Rectangle> current = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            current.clear();
+            int c = 0;
+            int k = 0;
+            while (c < columns) {
+                if (!tiles[r * columns + c]) {
+                    c++;
+                    continue;
+                }
+                int start = c;
+                while (c < columns && tiles[r * columns + c]) {
+                    c++;
+                }
+                int x = start * TILE;
+                int w = (c - start) * TILE;
+                // The runs of a row are in order from left to right, so the run above is found by walking along.
+                while (k < above.size() && above.get(k).x < x) {
+                    k++;
+                }
+                Rectangle run;
+                if (k < above.size() && above.get(k).x == x && above.get(k).width == w) {
+                    run = above.get(k);
+                    run.height += TILE;
+                } else {
+                    run = new Rectangle(x, r * TILE, w, TILE);
+                    result.add(run);
+                }
+                current.add(run);
+            }
+            List<Rectangle> swap = above;
+            above = current;
+            current = swap;
+        }
+        return result;
+    }
+
+    /**
+     * Marks a tile, counting its pixels if it was not marked yet.
+     * @param i the index of the tile
+     */
+    private void mark(int i) {
+        if (tiles[i]) {
+            return;
+        }
+        tiles[i] = true;
+        marked++;
+        int c = i % columns;
+        int r = i / columns;
+        pixels += (long) Math.min(TILE, width - c * TILE) * Math.min(TILE, height - r * TILE);
+    }
+}
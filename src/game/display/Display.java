@@ -0,0 +1,53 @@
+package game.display;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+/**
+ * Display is the game's window to the outside world: the surface it draws on
+ * and the keyboard it reads from.
+ * It lets the game run either on top of the biuoop GUI or fully headless.
+ */
+public interface Display {
+    /**
+     * Returns a surface to draw the next frame on.
+     * @return the draw surface
+     */
+    DrawSurface getDrawSurface();
+
+    /**
+     * Shows a surface that was previously obtained from getDrawSurface.
+     * @param d the surface to show
+     */
+    void show(DrawSurface d);
+
+    /**
+     * Returns the keyboard sensor used for player input.
+     * @return the keyboard sensor
+     */
+    KeyboardSensor getKeyboardSensor();
+
+    /**
+     * Waits for the given amount of milliseconds.
+     * Headless displays return immediately so the simulation is never throttled.
+     * @param milliseconds the time to wait
+     */
+    void sleepFor(long milliseconds);
+
+    /**
+     * Closes the display.
+     */
+    void close();
+
+    /**
+     * Returns the width of the display.
+     * @return the width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the display.
+     * @return the height in pixels
+     */
+    int getHeight();
+}
@@ -0,0 +1,234 @@
+package game.display;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FrameExporter writes recorded frames to a directory as numbered PNG images, without a screen.
+ * It owns a fixed number of pixel buffers. Capturing a frame takes a free buffer, draws the frame
+ * into it with a TileRasterizer on the caller's thread and hands it to a pool of encoder threads,
+ * which give it back once the image is written. When every buffer is waiting to be encoded, capture
+ * waits for one to come back, so a game that draws faster than the images are written is slowed
+ * down to the speed of the encoders instead of dropping frames or filling the heap.
+ */
+public class FrameExporter implements AutoCloseable {
+    private static final long WAIT_SECONDS = 60;
+
+    private final Path directory;
+    private final int width;
+    private final int height;
+    private final int buffers;
+    private final ExecutorService encoders;
+    private final BlockingQueue<Slot> free;
+    private final ThreadLocal<PngEncoder> encoder = ThreadLocal.withInitial(PngEncoder::new);
+    private final AtomicLong encoded = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private volatile IOException failure;
+    private long frames;
+    private long stalls;
+    private long stallNanos;
+    private int maxDepth;
+    private long started;
+    private long finished;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param directory the directory the images are written to; it is made if missing
+     * @param width the width of the frames
+     * @param height the height of the frames
+     * @param threads the number of encoder threads
+     * @param buffers the number of frames that may wait to be encoded at once
+     * @throws IOException if the directory cannot be made
+     */
+    public FrameExporter(Path directory, int width, int height, int threads, int buffers) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive");
+        }
+        if (threads <= 0 || buffers <= 0) {
+            throw new IllegalArgumentException("Thread and buffer counts must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.width = width;
+        this.height = height;
+        this.buffers = buffers;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Slot());
+        }
+        this.encoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "png-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Draws a frame into a free buffer and queues it to be written as the next image.
+     * Waits while every buffer is queued.
+     * @param frame the recorded frame; it can be cleared once this returns
+     */
+    public void capture(RenderCommandList frame) {
+        if (closed) {
+            throw new IllegalStateException("Exporter is closed");
+        }
+        rethrow();
+        if (frames == 0) {
+            started = System.nanoTime();
+        }
+        Slot slot = free.poll();
+        if (slot == null) {
+            long start = System.nanoTime();
+            slot = takeFree();
+            stalls++;
+            stallNanos += System.nanoTime() - start;
+        }
+        maxDepth = Math.max(maxDepth, buffers - free.size());
+        slot.rasterizer.draw(frame);
+        Path file = directory.resolve(String.format("frame-%06d.png", frames++));
+        Slot queued = slot;
+        encoders.execute(() -> encode(queued, file));
+    }
+
+    /**
+     * Waits for a buffer to come back from the encoders.
+     * @return the buffer
+     */
+    private Slot takeFree() {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a frame buffer", e);
+        }
+    }
+
+    /**
+     * Writes a buffer to a file and gives the buffer back. Runs on an encoder thread.
+     * @param slot the buffer
+     * @param file the file
+     */
+    private void encode(Slot slot, Path file) {
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            encoder.get().encode(slot.pixels, width, height, out);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            free.add(slot);
+        }
+        try {
+            bytes.addAndGet(Files.size(file));
+        } catch (IOException e) {
+            // The size is only for the statistics.
+        }
+        encodeNanos.addAndGet(System.nanoTime() - start);
+        encoded.incrementAndGet();
+    }
+
+    /**
+     * Throws the first error the encoders ran into, if any.
+     */
+    private void rethrow() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Writing a frame failed", e);
+        }
+    }
+
+    /**
+     * Waits for the queued frames to be written and stops the encoders.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        encoders.shutdown();
+        try {
+            if (!encoders.awaitTermination(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Frames were still being written after " + WAIT_SECONDS + "s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finished = System.nanoTime();
+        rethrow();
+    }
+
+    /**
+     * Returns the number of frames captured.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of frames written so far.
+     * @return the number of frames
+     */
+    public long getEncoded() {
+        return encoded.get();
+    }
+
+    /**
+     * Returns the number of captures that had to wait for a buffer.
+     * @return the number of stalls
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Returns the number of frames waiting to be written or being written.
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return buffers - free.size();
+    }
+
+    /**
+     * Returns the most frames that were queued at once.
+     * @return the queue depth
+     */
+    public int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        long done = encoded.get();
+        double seconds = ((closed ? finished : System.nanoTime()) - started) / 1e9;
+        double rate = frames == 0 || seconds <= 0 ? 0 : done / seconds;
+        double megabytes = bytes.get() / (1024.0 * 1024.0);
+        return "frames: " + done + "/" + frames + " to " + directory
+                + String.format(", %.1f fps, %.1f MB (%.1f MB/s)", rate, megabytes,
+                        seconds <= 0 ? 0 : megabytes / seconds)
+                + ", mean encode: " + (done == 0 ? 0 : encodeNanos.get() / 1000 / done) + "us"
+                + ", stalls: " + stalls + " (" + stallNanos / 1000000 + "ms)"
+                + ", queue: " + getQueueDepth() + "/" + buffers + " (max " + maxDepth + ")";
+    }
+
+    /**
+     * A pixel buffer and the rasterizer that draws into it.
+     */
+    private final class Slot {
+        private final int[] pixels = new int[width * height];
+        private final TileRasterizer rasterizer = new TileRasterizer(pixels, width, height);
+    }
+}
@@ -0,0 +1,193 @@
+package game.display;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GlyphCache keeps the shapes of characters as masks, so text can be drawn pixel by pixel.
+ * A character is rendered once per font size, with the font the biuoop surfaces write with,
+ * and looked up after that. The cache may be shared by surfaces on several threads.
+ */
+public class GlyphCache {
+    /**
+     * Characters are kept in pages of this many, one page per font size and high byte.
+     */
+    private static final int PAGE = 256;
+
+    private final String fontName;
+    private final Map<Integer, Glyph[]> pages = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for a cache of the default dialog font, the one biuoop writes with.
+     */
+    public GlyphCache() {
+        this(Font.DIALOG);
+    }
+
+    /**
+     * Constructor.
+     * @param fontName the name of the font to render characters with
+     */
+    public GlyphCache(String fontName) {
+        if (fontName == null) {
+            throw new IllegalArgumentException("Font name cannot be null");
+        }
+        this.fontName = fontName;
+    }
+
+    /**
+     * Returns the glyph of a character, rendering it the first time it is asked for.
+     * @param c the character
+     * @param size the font size
+     * @return the glyph
+     */
+    public Glyph get(char c, int size) {
+        Glyph[] page = pages.computeIfAbsent(size * PAGE + (c / PAGE), k -> new Glyph[PAGE]);
+        Glyph g = page[c % PAGE];
+        if (g == null) {
+            // Two threads may render the same character; both get an equal glyph.
+            g = render(c, size);
+            page[c % PAGE] = g;
+        }
+        return g;
+    }
+
+    /**
+     * Renders a character into a mask.
+     * @param c the character
+     * @param size the font size
+     * @return the glyph
+     */
+    private Glyph render(char c, int size) {
+        Font font = new Font(fontName, Font.PLAIN, size);
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D pg = probe.createGraphics();
+        FontMetrics metrics = pg.getFontMetrics(font);
+        pg.dispose();
+        int advance = metrics.charWidth(c);
+        int ascent = metrics.getMaxAscent();
+        // Glyphs may reach past their advance and the font's ascent, so they are drawn with a margin.
+        int margin = size;
+        int w = advance + 2 * margin;
+        int h = ascent + metrics.getMaxDescent() + 2 * margin;
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(font);
+        g.setColor(Color.WHITE);
+        g.drawString(String.valueOf(c), margin, margin + ascent);
+        g.dispose();
+
+        int minX = w;
+        int minY = h;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if (image.getRGB(x, y) >>> 24 >= 0x80) {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (maxX < 0) {
+            return new Glyph(0, 0, 0, 0, advance, new boolean[0]);
+        }
+        int gw = maxX - minX + 1;
+        int gh = maxY - minY + 1;
+        boolean[] mask = new boolean[gw * gh];
+        for (int y = 0; y < gh; y++) {
+            for (int x = 0; x < gw; x++) {
+                mask[y * gw + x] = image.getRGB(minX + x, minY + y) >>> 24 >= 0x80;
+            }
+        }
+        return new Glyph(minX - margin, minY - margin - ascent, gw, gh, advance, mask);
+    }
+
+    /**
+     * Glyph is the mask of one character, placed relative to the pen: the point on the baseline
+     * the character is written at.
+     */
+    public static final class Glyph {
+        private final int left;
+        private final int top;
+        private final int width;
+        private final int height;
+        private final int advance;
+        private final boolean[] mask;
+
+        /**
+         * Constructor.
+         * @param left the column of the mask's left edge, from the pen
+         * @param top the row of the mask's top edge, from the baseline
+         * @param width the width of the mask
+         * @param height the height of the mask
+         * @param advance how far the pen moves after the character
+         * @param mask the covered pixels, row after row
+         */
+        private Glyph(int left, int top, int width, int height, int advance, boolean[] mask) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.advance = advance;
+            this.mask = mask;
+        }
+
+        /**
+         * Returns the column of the mask's left edge, from the pen.
+         * @return the left offset
+         */
+        public int getLeft() {
+            return left;
+        }
+
+        /**
+         * Returns the row of the mask's top edge, from the baseline. Usually negative.
+         * @return the top offset
+         */
+        public int getTop() {
+            return top;
+        }
+
+        /**
+         * Returns the width of the mask.
+         * @return the width
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Returns the height of the mask.
+         * @return the height
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns how far the pen moves after the character.
+         * @return the advance
+         */
+        public int getAdvance() {
+            return advance;
+        }
+
+        /**
+         * Checks if the character covers a pixel of its mask.
+         * @param x the column in the mask
+         * @param y the row in the mask
+         * @return true if the pixel is part of the character
+         */
+        public boolean covers(int x, int y) {
+            return mask[y * width + x];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package game.display;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+import biuoop.Sleeper;
+
+/**
+ * GuiDisplay shows the game in a biuoop GUI window.
+ * The window is only opened the first time it is needed.
+ */
+public class GuiDisplay implements Display {
+    private String title;
+    private int width;
+    private int height;
+    private GUI gui;
+    private Sleeper sleeper = new Sleeper();
+
+    /**
+     * Constructor.
+     * @param title the window title
+     * @param width the window width
+     * @param height the window height
+     */
+    public GuiDisplay(String title, int width, int height) {
+        this.title = title;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the underlying GUI, opening the window if needed.
+     * @return the gui
+     */
+    private GUI gui() {
+        if (this.gui == null) {
+            this.gui = new GUI(title, width, height);
+        }
+        return this.gui;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return gui().getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        gui().show(d);
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return gui().getKeyboardSensor();
+    }
+
+    @Override
+    public void sleepFor(long milliseconds) {
+        sleeper.sleepFor(milliseconds);
+    }
+
+    @Override
+    public void close() {
+        if (this.gui != null) {
+            this.gui.close();
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,83 @@
+package game.display;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+/**
+ * HeadlessDisplay runs the game without a window.
+ * Frames are drawn on a NullDrawSurface and input comes from a ScriptedKeyboardSensor,
+ * so the game can be driven on machines without a display.
+ */
+public class HeadlessDisplay implements Display {
+    private int width;
+    private int height;
+    private DrawSurface surface;
+    private ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+    private long framesShown;
+
+    /**
+     * Constructor that draws on a NullDrawSurface.
+     * @param width the width of the virtual screen
+     * @param height the height of the virtual screen
+     */
+    public HeadlessDisplay(int width, int height) {
+        this(new NullDrawSurface(width, height));
+    }
+
+    /**
+     * Constructor that draws every frame on the given surface.
+     * @param surface the surface to draw on
+     */
+    public HeadlessDisplay(DrawSurface surface) {
+        this.surface = surface;
+        this.width = surface.getWidth();
+        this.height = surface.getHeight();
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return surface;
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        framesShown++;
+    }
+
+    /**
+     * Returns the scripted keyboard, so callers can press and release keys.
+     * @return the keyboard sensor
+     */
+    @Override
+    public ScriptedKeyboardSensor getKeyboardSensor() {
+        return keyboard;
+    }
+
+    @Override
+    public void sleepFor(long milliseconds) {
+        // Headless displays never throttle the simulation.
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close.
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of frames that were shown.
+     * @return the number of frames
+     */
+    public long getFramesShown() {
+        return framesShown;
+    }
+}
@@ -0,0 +1,138 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+
+/**
+ * ImageDrawSurface draws on an image, the same way the biuoop GUI draws on the screen.
+ * It lets sprites be drawn once into an off-screen layer.
+ */
+public class ImageDrawSurface implements DrawSurface {
+    private final BufferedImage image;
+    private final Graphics2D g;
+    private int fontSize = -1;
+
+    /**
+     * Constructor. The caller disposes of the graphics with dispose() when done.
+     * @param image the image to draw on
+     */
+    public ImageDrawSurface(BufferedImage image) {
+        if (image == null) {
+            throw new IllegalArgumentException("Image cannot be null");
+        }
+        this.image = image;
+        this.g = image.createGraphics();
+    }
+
+    /**
+     * Limits drawing to a rectangle.
+     * @param x the left edge
+     * @param y the top edge
+     * @param w the width
+     * @param h the height
+     */
+    public void clip(int x, int y, int w, int h) {
+        g.setClip(x, y, w, h);
+    }
+
+    /**
+     * Makes a rectangle of the image fully transparent.
+     * @param x the left edge
+     * @param y the top edge
+     * @param w the width
+     * @param h the height
+     */
+    public void clear(int x, int y, int w, int h) {
+        g.setBackground(new Color(0, 0, 0, 0));
+        g.clearRect(x, y, w, h);
+    }
+
+    /**
+     * Releases the graphics of the image.
+     */
+    public void dispose() {
+        g.dispose();
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        g.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        g.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        g.drawOval(x, y, w, h);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        g.fillOval(x, y, w, h);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        g.drawRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        g.fillRect(x, y, w, h);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        g.drawImage(img, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        g.drawOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        g.fillOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        // The font is only made again when the size changes, so drawing the same text allocates nothing.
+        if (fontSize != this.fontSize) {
+            Font font = g.getFont();
+            g.setFont(new Font(font.getFontName(), font.getStyle(), fontSize));
+            this.fontSize = fontSize;
+        }
+        g.drawString(s, x, y);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        g.drawPolygon(p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        g.fillPolygon(p);
+    }
+}
@@ -0,0 +1,122 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * NullDrawSurface is a DrawSurface that draws nothing.
+ * It only counts the calls made on it, which is enough to check that sprites are drawn.
+ */
+public class NullDrawSurface implements DrawSurface {
+    private int width;
+    private int height;
+    private long drawCalls;
+    private long colorChanges;
+
+    /**
+     * Constructor.
+     * @param width the width of the surface
+     * @param height the height of the surface
+     */
+    public NullDrawSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the number of draw calls made on the surface.
+     * @return the number of draw calls
+     */
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Returns the number of setColor calls made on the surface.
+     * @return the number of color changes
+     */
+    public long getColorChanges() {
+        return colorChanges;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void reset() {
+        drawCalls = 0;
+        colorChanges = 0;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        colorChanges++;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        drawCalls++;
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        drawCalls++;
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        drawCalls++;
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        drawCalls++;
+    }
+}
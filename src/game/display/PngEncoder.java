@@ -0,0 +1,158 @@
+package game.display;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PngEncoder writes arrays of 0xRRGGBB pixels as 8-bit RGB PNG images.
+ * Each row is stored with the Sub filter, which turns the long runs of one color in game frames into
+ * runs of zeros, and compressed at the fastest deflate level by default. The encoder keeps its
+ * deflater and buffers between images, so encoding allocates nothing after the first image;
+ * it is not thread safe, so each thread should have its own.
+ */
+public class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int FILTER_SUB = 1;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] compressed = new byte[64 * 1024];
+    private final byte[] header = new byte[13];
+    private final byte[] word = new byte[4];
+    private byte[] row = new byte[0];
+    private int pending;
+
+    /**
+     * Constructor for an encoder that compresses as fast as it can.
+     */
+    public PngEncoder() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Constructor.
+     * @param level the deflate level, from 0 (none) to 9 (smallest)
+     */
+    public PngEncoder(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between 0 and 9");
+        }
+        this.deflater = new Deflater(level);
+    }
+
+    /**
+     * Writes an image.
+     * @param pixels the pixels, 0xRRGGBB, one row after another
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param out the stream to write to; it is not closed
+     * @throws IOException if the stream fails
+     */
+    public void encode(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixels must hold width * height values");
+        }
+        out.write(SIGNATURE);
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = 2;
+        header[10] = 0;
+        header[11] = 0;
+        header[12] = 0;
+        chunk(out, "IHDR", header, 13);
+
+        int stride = 1 + width * BYTES_PER_PIXEL;
+        if (row.length < stride) {
+            row = new byte[stride];
+        }
+        deflater.reset();
+        pending = 0;
+        for (int y = 0; y < height; y++) {
+            filterRow(pixels, y * width, width);
+            deflater.setInput(row, 0, stride);
+            while (!deflater.needsInput()) {
+                deflate(out);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate(out);
+        }
+        chunk(out, "IDAT", compressed, pending);
+        chunk(out, "IEND", compressed, 0);
+    }
+
+    /**
+     * Compresses what the deflater can into the output buffer, first writing the buffer out
+     * as an IDAT chunk if it is full.
+     * @param out the stream to write to
+     * @throws IOException if the stream fails
+     */
+    private void deflate(OutputStream out) throws IOException {
+        if (pending == compressed.length) {
+            chunk(out, "IDAT", compressed, pending);
+            pending = 0;
+        }
+        pending += deflater.deflate(compressed, pending, compressed.length - pending);
+    }
+
+    /**
+     * Fills the row buffer with a row of pixels, Sub filtered: each byte minus the same byte of the
+     * pixel to its left.
+     * @param pixels the pixels
+     * @param offset the index of the row's first pixel
+     * @param width the number of pixels in the row
+     */
+    private void filterRow(int[] pixels, int offset, int width) {
+        row[0] = FILTER_SUB;
+        int left = 0;
+        for (int x = 0; x < width; x++) {
+            int p = pixels[offset + x];
+            int i = 1 + x * BYTES_PER_PIXEL;
+            row[i] = (byte) ((p >> 16) - (left >> 16));
+            row[i + 1] = (byte) ((p >> 8) - (left >> 8));
+            row[i + 2] = (byte) (p - left);
+            left = p;
+        }
+    }
+
+    /**
+     * Writes a chunk: its length, type, data and the CRC of the type and data.
+     * @param out the stream to write to
+     * @param type the four letter chunk type
+     * @param data the data
+     * @param length the number of bytes of data
+     * @throws IOException if the stream fails
+     */
+    private void chunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        putInt(word, 0, length);
+        out.write(word);
+        crc.reset();
+        for (int i = 0; i < 4; i++) {
+            word[i] = (byte) type.charAt(i);
+        }
+        out.write(word);
+        crc.update(word);
+        out.write(data, 0, length);
+        crc.update(data, 0, length);
+        putInt(word, 0, (int) crc.getValue());
+        out.write(word);
+    }
+
+    /**
+     * Puts an int into a byte array, most significant byte first.
+     * @param b the array
+     * @param offset where the int goes
+     * @param value the int
+     */
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,493 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * RenderCommandList is a DrawSurface that records the calls made on it instead of drawing,
+ * so a frame can be drawn on one thread and put on the screen by another.
+ * The calls are kept in flat arrays that are reused from frame to frame: after the first few
+ * frames, recording and replaying a frame allocates nothing.
+ * Colors, images, texts and polygons are kept by reference, so they should not be changed
+ * after they were drawn.
+ * setColor is not recorded as a call of its own: every drawing call keeps the color it was made
+ * with, and a replay sets the color only when it differs from the one the last call drew with.
+ * Calls recorded between beginBatch and endBatch are sorted when the batch ends, fills before
+ * outlines, then by color and by kind, so a replay changes state as rarely as possible.
+ * A frame also carries its number and the region the sprites reported as changed, for a
+ * DirtyRectRenderer to draw only that region.
+ */
+public class RenderCommandList implements DrawSurface {
+    private static final int DRAW_LINE = 1;
+    private static final int DRAW_OVAL = 2;
+    private static final int FILL_OVAL = 3;
+    private static final int DRAW_RECTANGLE = 4;
+    private static final int FILL_RECTANGLE = 5;
+    private static final int DRAW_IMAGE = 6;
+    private static final int DRAW_CIRCLE = 7;
+    private static final int FILL_CIRCLE = 8;
+    private static final int DRAW_TEXT = 9;
+    private static final int DRAW_POLYGON = 10;
+    private static final int FILL_POLYGON = 11;
+    /**
+     * The number of ints kept per command.
+     */
+    private static final int ARGS = 4;
+    /**
+     * The bits of a sort key that hold the index of a call within its batch.
+     */
+    private static final int INDEX_BITS = 32;
+    /**
+     * The bits of a sort key that hold the kind of a call.
+     */
+    private static final int OP_BITS = 4;
+
+    private int width;
+    private int height;
+    private int size;
+    private int[] ops = new int[256];
+    private int[] args = new int[256 * ARGS];
+    private Object[] refs = new Object[256];
+    private Color[] colors = new Color[256];
+    private Color color;
+    private int[] box = new int[4];
+    private int batchStart = -1;
+    private long[] keys = new long[0];
+    private Color[] ranks = new Color[8];
+    private int[] scratchOps = new int[0];
+    private int[] scratchArgs = new int[0];
+    private Object[] scratchRefs = new Object[0];
+    private Color[] scratchColors = new Color[0];
+    private long sequence;
+    private DirtyRegion damage;
+    private boolean damageKnown;
+
+    /**
+     * Constructor for an empty list.
+     * @param width the width reported to the sprites drawing on it
+     * @param height the height reported to the sprites drawing on it
+     */
+    public RenderCommandList(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Forgets the recorded calls, keeping the arrays for the next frame.
+     */
+    public void clear() {
+        size = 0;
+        color = null;
+        batchStart = -1;
+    }
+
+    /**
+     * Starts a batch. The calls recorded until endBatch may be drawn in any order among themselves,
+     * except that every fill and image is drawn before every outline, line and text of the batch.
+     * Sprites put in one batch should not overlap in a way that shows the order they are drawn in.
+     */
+    public void beginBatch() {
+        if (batchStart >= 0) {
+            throw new IllegalStateException("A batch was already begun");
+        }
+        batchStart = size;
+    }
+
+    /**
+     * Ends a batch, sorting its calls by pass, color and kind. Calls with the same key keep their order.
+     */
+    public void endBatch() {
+        if (batchStart < 0) {
+            throw new IllegalStateException("No batch was begun");
+        }
+        if (size - batchStart > 1) {
+            sort(batchStart, size);
+        }
+        batchStart = -1;
+    }
+
+    /**
+     * Counts the times a full replay sets the color.
+     * @return the number of color changes
+     */
+    public int countColorChanges() {
+        int changes = 0;
+        Color last = null;
+        for (int i = 0; i < size; i++) {
+            if (colors[i] != null && !colors[i].equals(last)) {
+                last = colors[i];
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Sets the frame's number. Frames are numbered one after another as they are recorded.
+     * @param sequence the number
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the frame's number.
+     * @return the number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the region the sprites reported as changed in this frame, made the first time it is asked for.
+     * @return the frame's damage
+     */
+    public DirtyRegion getDamage() {
+        if (damage == null) {
+            damage = new DirtyRegion(width, height);
+        }
+        return damage;
+    }
+
+    /**
+     * Sets whether every sprite reported its damage. If not, the whole frame has to be drawn.
+     * @param known true if the damage is complete
+     */
+    public void setDamageKnown(boolean known) {
+        this.damageKnown = known;
+    }
+
+    /**
+     * Checks whether every sprite reported its damage.
+     * @return true if the damage is complete
+     */
+    public boolean isDamageKnown() {
+        return damageKnown;
+    }
+
+    /**
+     * Returns the number of recorded calls.
+     * @return the number of calls
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes the same calls, in the same order, on another surface.
+     * @param d the surface to draw on
+     */
+    public void replay(DrawSurface d) {
+        Color last = null;
+        for (int i = 0; i < size; i++) {
+            last = play(d, i, last);
+        }
+    }
+
+    /**
+     * Makes the same calls on another surface, leaving out the calls that cannot reach a rectangle.
+     * Uses a scratch array of the list, so only one thread at a time may call it.
+     * @param d the surface to draw on, clipped to the rectangle
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     */
+    public void replay(DrawSurface d, int x, int y, int w, int h) {
+        Color last = null;
+        for (int i = 0; i < size; i++) {
+            if (!bounds(i, box) || (box[0] < x + w && box[2] >= x && box[1] < y + h && box[3] >= y)) {
+                last = play(d, i, last);
+            }
+        }
+    }
+
+    /**
+     * Finds the pixels a recorded call may draw in.
+     * @param i the index of the call
+     * @param box receives the left, top, right and bottom edges, all included
+     * @return false if the extent of the call is not known, like for text
+     */
+    boolean bounds(int i, int[] box) {
+        int a = i * ARGS;
+        switch (ops[i]) {
+            case DRAW_LINE:
+                box[0] = Math.min(args[a], args[a + 2]);
+                box[1] = Math.min(args[a + 1], args[a + 3]);
+                box[2] = Math.max(args[a], args[a + 2]);
+                box[3] = Math.max(args[a + 1], args[a + 3]);
+                return true;
+            case DRAW_OVAL:
+            case FILL_OVAL:
+            case DRAW_RECTANGLE:
+            case FILL_RECTANGLE:
+                box[0] = args[a];
+                box[1] = args[a + 1];
+                box[2] = args[a] + args[a + 2];
+                box[3] = args[a + 1] + args[a + 3];
+                return true;
+            case DRAW_CIRCLE:
+            case FILL_CIRCLE:
+                box[0] = args[a] - args[a + 2];
+                box[1] = args[a + 1] - args[a + 2];
+                box[2] = args[a] + args[a + 2];
+                box[3] = args[a + 1] + args[a + 2];
+                return true;
+            case DRAW_IMAGE:
+                Image image = (Image) refs[i];
+                int iw = image.getWidth(null);
+                int ih = image.getHeight(null);
+                if (iw < 0 || ih < 0) {
+                    return false;
+                }
+                box[0] = args[a];
+                box[1] = args[a + 1];
+                box[2] = args[a] + iw - 1;
+                box[3] = args[a + 1] + ih - 1;
+                return true;
+            case DRAW_POLYGON:
+            case FILL_POLYGON:
+                Rectangle b = ((Polygon) refs[i]).getBounds();
+                box[0] = b.x;
+                box[1] = b.y;
+                box[2] = b.x + b.width;
+                box[3] = b.y + b.height;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Makes some of the recorded calls on a surface, in the order given. Only reads the list,
+     * so several threads may replay parts of one frame at the same time.
+     * @param d the surface to draw on
+     * @param calls the indexes of the calls
+     * @param from the position in calls of the first call to make
+     * @param to the position in calls after the last call to make
+     */
+    void replay(DrawSurface d, int[] calls, int from, int to) {
+        Color last = null;
+        for (int k = from; k < to; k++) {
+            last = play(d, calls[k], last);
+        }
+    }
+
+    /**
+     * Makes one recorded call on a surface, setting its color first if the surface has another one.
+     * @param d the surface to draw on
+     * @param i the index of the call
+     * @param last the color the surface draws with, or null if not known
+     * @return the color the surface draws with after the call
+     */
+    private Color play(DrawSurface d, int i, Color last) {
+        Color current = last;
+        if (colors[i] != null && !colors[i].equals(current)) {
+            current = colors[i];
+            d.setColor(current);
+        }
+        int a = i * ARGS;
+        switch (ops[i]) {
+            case DRAW_LINE:
+                d.drawLine(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_OVAL:
+                d.drawOval(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case FILL_OVAL:
+                d.fillOval(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_RECTANGLE:
+                d.drawRectangle(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case FILL_RECTANGLE:
+                d.fillRectangle(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_IMAGE:
+                d.drawImage(args[a], args[a + 1], (Image) refs[i]);
+                break;
+            case DRAW_CIRCLE:
+                d.drawCircle(args[a], args[a + 1], args[a + 2]);
+                break;
+            case FILL_CIRCLE:
+                d.fillCircle(args[a], args[a + 1], args[a + 2]);
+                break;
+            case DRAW_TEXT:
+                d.drawText(args[a], args[a + 1], (String) refs[i], args[a + 2]);
+                break;
+            case DRAW_POLYGON:
+                d.drawPolygon((Polygon) refs[i]);
+                break;
+            case FILL_POLYGON:
+                d.fillPolygon((Polygon) refs[i]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown command " + ops[i]);
+        }
+        return current;
+    }
+
+    /**
+     * Sorts the calls in a range by their keys, moving their arguments with them.
+     * @param from the index of the first call
+     * @param to the index after the last call
+     */
+    private void sort(int from, int to) {
+        int n = to - from;
+        if (keys.length < n) {
+            keys = new long[ops.length];
+            scratchOps = new int[ops.length];
+            scratchArgs = new int[args.length];
+            scratchRefs = new Object[refs.length];
+            scratchColors = new Color[colors.length];
+        }
+        // Colors are ranked in the order they first appear in the batch, from 1; a batch has few of them.
+        // Images have no color and rank 0, so they keep their order among themselves.
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            Color c = colors[from + i];
+            int rank = 0;
+            if (c != null) {
+                rank = 1;
+                while (rank <= distinct && !ranks[rank - 1].equals(c)) {
+                    rank++;
+                }
+                if (rank > distinct) {
+                    if (distinct == ranks.length) {
+                        ranks = Arrays.copyOf(ranks, distinct * 2);
+                    }
+                    ranks[distinct++] = c;
+                }
+            }
+            long pass = isFill(ops[from + i]) ? 0 : 1;
+            keys[i] = pass << (Long.SIZE - 2) | (long) rank << (INDEX_BITS + OP_BITS)
+                    | (long) ops[from + i] << INDEX_BITS | i;
+        }
+        Arrays.fill(ranks, 0, distinct, null);
+        Arrays.sort(keys, 0, n);
+        System.arraycopy(ops, from, scratchOps, 0, n);
+        System.arraycopy(args, from * ARGS, scratchArgs, 0, n * ARGS);
+        System.arraycopy(refs, from, scratchRefs, 0, n);
+        System.arraycopy(colors, from, scratchColors, 0, n);
+        for (int i = 0; i < n; i++) {
+            int j = (int) keys[i];
+            ops[from + i] = scratchOps[j];
+            System.arraycopy(scratchArgs, j * ARGS, args, (from + i) * ARGS, ARGS);
+            refs[from + i] = scratchRefs[j];
+            colors[from + i] = scratchColors[j];
+        }
+        Arrays.fill(scratchRefs, 0, n, null);
+        Arrays.fill(scratchColors, 0, n, null);
+    }
+
+    /**
+     * Checks if a kind of call covers an area rather than drawing an outline, a line or text.
+     * @param op the kind of call
+     * @return true for fills and images
+     */
+    private static boolean isFill(int op) {
+        return op == FILL_OVAL || op == FILL_RECTANGLE || op == FILL_CIRCLE || op == FILL_POLYGON || op == DRAW_IMAGE;
+    }
+
+    /**
+     * Records a call.
+     * @param op the command
+     * @param a the first int argument
+     * @param b the second int argument
+     * @param c the third int argument
+     * @param e the fourth int argument
+     * @param ref the object argument, or null
+     */
+    private void record(int op, int a, int b, int c, int e, Object ref) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 2);
+            args = Arrays.copyOf(args, size * 2 * ARGS);
+            refs = Arrays.copyOf(refs, size * 2);
+            colors = Arrays.copyOf(colors, size * 2);
+        }
+        int i = size * ARGS;
+        ops[size] = op;
+        args[i] = a;
+        args[i + 1] = b;
+        args[i + 2] = c;
+        args[i + 3] = e;
+        refs[size] = ref;
+        colors[size] = op == DRAW_IMAGE ? null : color;
+        size++;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2, null);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        record(DRAW_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        record(FILL_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        record(DRAW_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        record(FILL_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        record(DRAW_IMAGE, x, y, 0, 0, image);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record(DRAW_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record(FILL_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        record(DRAW_TEXT, x, y, fontSize, 0, s);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        record(DRAW_POLYGON, 0, 0, 0, 0, p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        record(FILL_POLYGON, 0, 0, 0, 0, p);
+    }
+}
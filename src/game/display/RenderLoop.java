@@ -0,0 +1,120 @@
+package game.display;
+
+import biuoop.DrawSurface;
+import game.metrics.FrameProfiler;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RenderLoop puts recorded frames on a display from a thread of its own.
+ * The simulation records each frame into the back buffer of a triple buffer, publishes it and
+ * calls signal(); the render thread wakes up, takes the latest frame and replays it on the display.
+ * A slow display only means some frames are never shown, it does not slow the simulation down,
+ * and a slow tick only means the same frame stays on the screen longer.
+ */
+public class RenderLoop implements Runnable {
+    private final Display display;
+    private final TripleBuffer<RenderCommandList> frames;
+    private final DirtyRectRenderer presenter;
+    private FrameProfiler profiler;
+    private volatile boolean running;
+    private volatile long framesShown;
+    private volatile long taken = -1;
+    private Thread thread;
+
+    /**
+     * Constructor.
+     * @param display the display to show the frames on
+     * @param frames the buffer the frames are published to
+     * @param presenter draws only what changed in each frame, or null to replay whole frames
+     */
+    public RenderLoop(Display display, TripleBuffer<RenderCommandList> frames, DirtyRectRenderer presenter) {
+        if (display == null || frames == null) {
+            throw new IllegalArgumentException("Display and frames cannot be null");
+        }
+        this.display = display;
+        this.frames = frames;
+        this.presenter = presenter;
+    }
+
+    /**
+     * Sets the profiler the render thread times drawing and showing frames with, or null. Call before start.
+     * @param profiler the profiler, or null
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Starts the render thread.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wakes the render thread up after a frame was published. Never blocks.
+     */
+    public void signal() {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the render thread and waits for it to finish the frame it is showing.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of frames put on the display so far.
+     * @return the number of frames shown
+     */
+    public long getFramesShown() {
+        return framesShown;
+    }
+
+    /**
+     * Returns the number of the newest frame the render thread has taken. It never draws an older one again,
+     * so whatever only older frames point to may be reused.
+     * @return the frame's sequence number, or -1 before the first frame
+     */
+    public long getTakenSequence() {
+        return taken;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (!frames.acquire()) {
+                LockSupport.park(this);
+                continue;
+            }
+            taken = frames.front().getSequence();
+            boolean timed = profiler != null && profiler.isEnabled();
+            long start = timed ? System.nanoTime() : 0;
+            DrawSurface d = display.getDrawSurface();
+            if (presenter != null) {
+                presenter.present(frames.front(), d);
+            } else {
+                frames.front().replay(d);
+            }
+            long drawn = timed ? System.nanoTime() : 0;
+            display.show(d);
+            if (timed) {
+                profiler.record(FrameProfiler.Phase.DRAW, drawn - start);
+                profiler.record(FrameProfiler.Phase.SHOW, System.nanoTime() - drawn);
+            }
+            framesShown++;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package game.display;
+
+import biuoop.KeyboardSensor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ScriptedKeyboardSensor is a KeyboardSensor whose keys are pressed and released by code.
+ * It is used to drive the paddle when the game runs headless.
+ */
+public class ScriptedKeyboardSensor implements KeyboardSensor {
+    private Set<String> pressed = new HashSet<>();
+
+    /**
+     * Presses a key until it is released.
+     * @param key the key to press
+     */
+    public void press(String key) {
+        pressed.add(key);
+    }
+
+    /**
+     * Releases a key.
+     * @param key the key to release
+     */
+    public void release(String key) {
+        pressed.remove(key);
+    }
+
+    /**
+     * Releases all keys.
+     */
+    public void releaseAll() {
+        pressed.clear();
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        return pressed.contains(key);
+    }
+}
@@ -0,0 +1,83 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SoftwareDisplay is a headless display that really draws its frames, into an image in memory,
+ * with a TileRasterizer instead of Java2D. Frames are recorded on the surface it hands out and
+ * drawn when they are shown, so the image always holds the last frame shown.
+ */
+public class SoftwareDisplay extends HeadlessDisplay {
+    private final RenderCommandList frame;
+    private final BufferedImage image;
+    private final TileRasterizer rasterizer;
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor.
+     * @param width the width of the virtual screen
+     * @param height the height of the virtual screen
+     * @param threads the number of threads tiles are drawn on, 0 to draw them on the caller's thread
+     */
+    public SoftwareDisplay(int width, int height, int threads) {
+        this(new RenderCommandList(width, height), threads);
+    }
+
+    /**
+     * Constructor that records on the given list.
+     * @param frame the list frames are recorded on
+     * @param threads the number of threads tiles are drawn on, 0 to draw them on the caller's thread
+     */
+    private SoftwareDisplay(RenderCommandList frame, int threads) {
+        super(frame);
+        if (threads < 0) {
+            throw new IllegalArgumentException("Thread count cannot be negative");
+        }
+        this.frame = frame;
+        this.image = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.rasterizer = new TileRasterizer(pixels, frame.getWidth(), frame.getHeight());
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            rasterizer.setPool(pool);
+        }
+    }
+
+    /**
+     * Draws the recorded frame into the image and starts recording the next one.
+     * @param d the surface returned by getDrawSurface
+     */
+    @Override
+    public void show(DrawSurface d) {
+        rasterizer.draw(frame);
+        frame.clear();
+        super.show(d);
+    }
+
+    /**
+     * Returns the image the frames are drawn into. It is drawn over by every show.
+     * @return the image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the rasterizer, for its timings.
+     * @return the rasterizer
+     */
+    public TileRasterizer getRasterizer() {
+        return rasterizer;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
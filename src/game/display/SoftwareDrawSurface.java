@@ -0,0 +1,393 @@
+package game.display;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * SoftwareDrawSurface draws into an array of pixels with its own scanline fills, without Java2D.
+ * Pixels are 0xRRGGBB ints, one row after another, like a TYPE_INT_RGB image.
+ * Rectangles, outlines, lines, text and images come out the same as with Java2D. Ovals and polygons
+ * cover the pixels whose centers are inside them, which differs from Java2D at some edge pixels.
+ * Drawing is limited to a clip rectangle, so several surfaces can draw the tiles of one frame
+ * on different threads.
+ */
+public class SoftwareDrawSurface implements DrawSurface {
+    /**
+     * How far Java2D moves the corners of filled shapes, to sample them the way it does.
+     */
+    private static final double NORMALIZE = 0.25;
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final GlyphCache glyphs;
+    private int clipMinX;
+    private int clipMinY;
+    private int clipMaxX;
+    private int clipMaxY;
+    private int argb = 0xFF000000;
+    private int[] row = new int[0];
+    private double[] crossings = new double[8];
+
+    /**
+     * Constructor.
+     * @param pixels the pixels to draw into, width * height of them
+     * @param width the width of the surface
+     * @param height the height of the surface
+     * @param glyphs the glyphs text is drawn with
+     */
+    public SoftwareDrawSurface(int[] pixels, int width, int height, GlyphCache glyphs) {
+        if (pixels == null || glyphs == null) {
+            throw new IllegalArgumentException("Pixels and glyphs cannot be null");
+        }
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixels must hold width * height values");
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.glyphs = glyphs;
+        this.clipMaxX = width;
+        this.clipMaxY = height;
+    }
+
+    /**
+     * Limits drawing to a rectangle. The parts outside the surface are ignored.
+     * @param x the left edge
+     * @param y the top edge
+     * @param w the width
+     * @param h the height
+     */
+    public void clip(int x, int y, int w, int h) {
+        clipMinX = Math.max(0, x);
+        clipMinY = Math.max(0, y);
+        clipMaxX = Math.min(width, x + w);
+        clipMaxY = Math.min(height, y + h);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        argb = color.getRGB();
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        int y1 = Math.min(clipMaxY, y + h);
+        for (int py = Math.max(clipMinY, y); py < y1; py++) {
+            span(py, x, x + w - 1);
+        }
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        if (w < 0 || h < 0) {
+            return;
+        }
+        // Like Java2D, the outline covers x to x + w and y to y + h, both included.
+        span(y, x, x + w);
+        if (h > 0) {
+            span(y + h, x, x + w);
+        }
+        for (int py = y + 1; py < y + h; py++) {
+            plot(x, py);
+            if (w > 0) {
+                plot(x + w, py);
+            }
+        }
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int error = dx + dy;
+        int x = x1;
+        int y = y1;
+        while (true) {
+            plot(x, y);
+            if (x == x2 && y == y2) {
+                return;
+            }
+            int e2 = 2 * error;
+            if (e2 >= dy) {
+                error += dy;
+                x += sx;
+            }
+            if (e2 <= dx) {
+                error += dx;
+                y += sy;
+            }
+        }
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        double rx = w / 2.0;
+        double ry = h / 2.0;
+        // Java2D moves the corners of filled shapes a quarter pixel down and right; so does this.
+        double cx = x + NORMALIZE + rx;
+        double cy = y + NORMALIZE + ry;
+        int y1 = Math.min(clipMaxY, y + h + 1);
+        for (int py = Math.max(clipMinY, y); py < y1; py++) {
+            double half = halfWidth(py + 0.5 - cy, rx, ry);
+            if (half > 0) {
+                span(py, (int) Math.ceil(cx - half - 0.5), (int) Math.floor(cx + half - 0.5));
+            }
+        }
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        if (w < 0 || h < 0) {
+            return;
+        }
+        // Like Java2D, a one pixel wide ring around the oval through the pixel centers, w + 1 pixels across.
+        double cx = x + w / 2.0 + 0.5;
+        double cy = y + h / 2.0 + 0.5;
+        double rx = w / 2.0;
+        double ry = h / 2.0;
+        int y1 = Math.min(clipMaxY, y + h + 1);
+        for (int py = Math.max(clipMinY, y); py < y1; py++) {
+            double dy = py + 0.5 - cy;
+            double outer = halfWidth(dy, rx + 0.5, ry + 0.5);
+            if (outer <= 0) {
+                continue;
+            }
+            int outerStart = (int) Math.ceil(cx - outer - 0.5);
+            int outerEnd = (int) Math.floor(cx + outer - 0.5);
+            double inner = rx > 0.5 && ry > 0.5 ? halfWidth(dy, rx - 0.5, ry - 0.5) : 0;
+            if (inner <= 0) {
+                span(py, outerStart, outerEnd);
+                continue;
+            }
+            int innerStart = (int) Math.ceil(cx - inner - 0.5);
+            int innerEnd = (int) Math.floor(cx + inner - 0.5);
+            span(py, outerStart, Math.max(outerStart, innerStart - 1));
+            span(py, Math.min(outerEnd, innerEnd + 1), outerEnd);
+        }
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        fillOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        drawOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        if (p.npoints < 3) {
+            return;
+        }
+        Rectangle b = p.getBounds();
+        int y1 = Math.min(clipMaxY, b.y + b.height);
+        if (crossings.length < p.npoints) {
+            crossings = new double[p.npoints];
+        }
+        for (int py = Math.max(clipMinY, b.y); py < y1; py++) {
+            double sy = py + 0.5 - NORMALIZE;
+            int n = 0;
+            for (int i = 0, j = p.npoints - 1; i < p.npoints; j = i++) {
+                double ya = p.ypoints[j];
+                double yb = p.ypoints[i];
+                if ((ya <= sy) != (yb <= sy)) {
+                    double t = (sy - ya) / (yb - ya);
+                    crossings[n++] = p.xpoints[j] + NORMALIZE + t * (p.xpoints[i] - p.xpoints[j]);
+                }
+            }
+            Arrays.sort(crossings, 0, n);
+            // Even-odd, like java.awt.Polygon: the pixels between each pair of crossings are inside.
+            for (int k = 0; k + 1 < n; k += 2) {
+                span(py, (int) Math.ceil(crossings[k] - 0.5), (int) Math.ceil(crossings[k + 1] - 0.5) - 1);
+            }
+        }
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        for (int i = 0, j = p.npoints - 1; i < p.npoints; j = i++) {
+            drawLine(p.xpoints[j], p.ypoints[j], p.xpoints[i], p.ypoints[i]);
+        }
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        BufferedImage image = img instanceof BufferedImage ? (BufferedImage) img : toBufferedImage(img);
+        int x0 = Math.max(clipMinX, x);
+        int x1 = Math.min(clipMaxX, x + image.getWidth());
+        int y1 = Math.min(clipMaxY, y + image.getHeight());
+        int w = x1 - x0;
+        if (w <= 0) {
+            return;
+        }
+        if (row.length < w) {
+            row = new int[w];
+        }
+        boolean opaque = !image.getColorModel().hasAlpha();
+        // Images packed as ints are read a row at a time as they are; the rest go through their color model.
+        boolean packed = image.getType() == BufferedImage.TYPE_INT_ARGB
+                || image.getType() == BufferedImage.TYPE_INT_RGB;
+        for (int py = Math.max(clipMinY, y); py < y1; py++) {
+            if (packed) {
+                image.getRaster().getDataElements(x0 - x, py - y, w, 1, row);
+            } else {
+                image.getRGB(x0 - x, py - y, w, 1, row, 0, w);
+            }
+            int base = py * width + x0;
+            for (int i = 0; i < w; i++) {
+                int src = row[i];
+                int a = src >>> 24;
+                if (opaque || a == 0xFF) {
+                    pixels[base + i] = src & 0xFFFFFF;
+                } else if (a != 0) {
+                    pixels[base + i] = blend(pixels[base + i], src, a);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        int penX = x;
+        for (int i = 0; i < s.length(); i++) {
+            GlyphCache.Glyph g = glyphs.get(s.charAt(i), fontSize);
+            int gx = penX + g.getLeft();
+            int gy = y + g.getTop();
+            int y1 = Math.min(clipMaxY, gy + g.getHeight());
+            for (int py = Math.max(clipMinY, gy); py < y1; py++) {
+                int x1 = Math.min(clipMaxX, gx + g.getWidth());
+                for (int px = Math.max(clipMinX, gx); px < x1; px++) {
+                    if (g.covers(px - gx, py - gy)) {
+                        put(py * width + px);
+                    }
+                }
+            }
+            penX += g.getAdvance();
+        }
+    }
+
+    /**
+     * Copies an image that is not a BufferedImage into one, so its pixels can be read. This goes through
+     * Java2D and allocates; the images the game draws are all BufferedImages.
+     * @param img the image
+     * @return a copy of the image
+     */
+    private static BufferedImage toBufferedImage(Image img) {
+        BufferedImage copy = new BufferedImage(Math.max(1, img.getWidth(null)), Math.max(1, img.getHeight(null)),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Returns half the width of an ellipse at a height from its center.
+     * @param dy the height from the center
+     * @param rx the horizontal radius
+     * @param ry the vertical radius
+     * @return half the width, 0 or less above and below the ellipse
+     */
+    private static double halfWidth(double dy, double rx, double ry) {
+        double t = 1 - (dy * dy) / (ry * ry);
+        return t <= 0 ? 0 : rx * Math.sqrt(t);
+    }
+
+    /**
+     * Fills a run of pixels in a row with the current color, clipped.
+     * @param py the row
+     * @param from the first column
+     * @param to the last column, included
+     */
+    private void span(int py, int from, int to) {
+        if (py < clipMinY || py >= clipMaxY) {
+            return;
+        }
+        int x0 = Math.max(clipMinX, from);
+        int x1 = Math.min(clipMaxX - 1, to);
+        if (x0 > x1) {
+            return;
+        }
+        int base = py * width;
+        if (argb >>> 24 == 0xFF) {
+            Arrays.fill(pixels, base + x0, base + x1 + 1, argb & 0xFFFFFF);
+        } else {
+            for (int i = base + x0; i <= base + x1; i++) {
+                put(i);
+            }
+        }
+    }
+
+    /**
+     * Sets one pixel to the current color, if it is inside the clip.
+     * @param px the column
+     * @param py the row
+     */
+    private void plot(int px, int py) {
+        if (px >= clipMinX && px < clipMaxX && py >= clipMinY && py < clipMaxY) {
+            put(py * width + px);
+        }
+    }
+
+    /**
+     * Draws the current color over a pixel.
+     * @param i the index of the pixel
+     */
+    private void put(int i) {
+        int a = argb >>> 24;
+        if (a == 0xFF) {
+            pixels[i] = argb & 0xFFFFFF;
+        } else if (a != 0) {
+            pixels[i] = blend(pixels[i], argb, a);
+        }
+    }
+
+    /**
+     * Blends a translucent color over an opaque one.
+     * @param dst the color underneath
+     * @param src the color on top
+     * @param a the alpha of the color on top, from 0 to 255
+     * @return the blended color
+     */
+    private static int blend(int dst, int src, int a) {
+        int r = mul(src >> 16 & 0xFF, a) + mul(dst >> 16 & 0xFF, 255 - a);
+        int g = mul(src >> 8 & 0xFF, a) + mul(dst >> 8 & 0xFF, 255 - a);
+        int b = mul(src & 0xFF, a) + mul(dst & 0xFF, 255 - a);
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Multiplies two values from 0 to 255 as fractions of 255, rounded, the way Java2D blends.
+     * @param v the first value
+     * @param a the second value
+     * @return the product, from 0 to 255
+     */
+    private static int mul(int v, int a) {
+        return (v * a + 127) / 255;
+    }
+}
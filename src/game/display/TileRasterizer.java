@@ -0,0 +1,247 @@
+package game.display;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TileRasterizer draws recorded frames into an array of pixels with SoftwareDrawSurfaces.
+ * The frame is split into square tiles. The frame's calls are first sorted into the tiles they may
+ * reach, keeping their order; then each tile is cleared to the background and its calls are replayed,
+ * clipped to it. Tiles do not share pixels, so with a fork-join pool they are drawn in parallel,
+ * and the result is the same on any number of threads.
+ */
+public class TileRasterizer {
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int DEFAULT_TILE = 64;
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final int tile;
+    private final int columns;
+    private final int rows;
+    private final int tiles;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] box = new int[4];
+    private int[] binned = new int[1024];
+    private final GlyphCache glyphs = new GlyphCache();
+    private ForkJoinPool pool;
+    private Color background = DirtyRectRenderer.DEFAULT_BACKGROUND;
+    private RenderCommandList frame;
+    private long frames;
+    private long nanos;
+
+    /**
+     * Constructor for a rasterizer with the default tile size.
+     * @param pixels the pixels to draw into, width * height of them
+     * @param width the width of the frames
+     * @param height the height of the frames
+     */
+    public TileRasterizer(int[] pixels, int width, int height) {
+        this(pixels, width, height, DEFAULT_TILE);
+    }
+
+    /**
+     * Constructor.
+     * @param pixels the pixels to draw into, width * height of them
+     * @param width the width of the frames
+     * @param height the height of the frames
+     * @param tile the width and height of a tile
+     */
+    public TileRasterizer(int[] pixels, int width, int height, int tile) {
+        if (pixels == null || width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixels must hold width * height values");
+        }
+        if (tile <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.tile = tile;
+        this.columns = (width + tile - 1) / tile;
+        this.rows = (height + tile - 1) / tile;
+        this.tiles = columns * rows;
+        this.starts = new int[tiles + 1];
+        this.ends = new int[tiles];
+    }
+
+    /**
+     * Sets the fork-join pool the tiles are drawn on, or null to draw them one after another.
+     * @param pool the pool, or null
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the color drawn behind the frame.
+     * @param background the color
+     */
+    public void setBackground(Color background) {
+        if (background == null) {
+            throw new IllegalArgumentException("Background cannot be null");
+        }
+        this.background = background;
+    }
+
+    /**
+     * Draws a whole frame.
+     * @param recorded the frame
+     */
+    public void draw(RenderCommandList recorded) {
+        long start = System.nanoTime();
+        frame = recorded;
+        bin();
+        if (pool == null) {
+            new TileTask(0, tiles).compute();
+        } else {
+            pool.invoke(new TileTask(0, tiles));
+        }
+        frame = null;
+        nanos += System.nanoTime() - start;
+        frames++;
+    }
+
+    /**
+     * Sorts the calls of the frame into the tiles they may reach, in two passes over the calls:
+     * one counts the calls of each tile, the other writes them where the counts put them.
+     */
+    private void bin() {
+        Arrays.fill(ends, 0);
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.bounds(i, box)) {
+                for (int r = firstRow(); r <= lastRow(); r++) {
+                    for (int c = firstColumn(); c <= lastColumn(); c++) {
+                        ends[r * columns + c]++;
+                    }
+                }
+            } else {
+                for (int t = 0; t < tiles; t++) {
+                    ends[t]++;
+                }
+            }
+        }
+        for (int t = 0; t < tiles; t++) {
+            starts[t + 1] = starts[t] + ends[t];
+            ends[t] = starts[t];
+        }
+        if (binned.length < starts[tiles]) {
+            binned = new int[Math.max(starts[tiles], binned.length * 2)];
+        }
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.bounds(i, box)) {
+                for (int r = firstRow(); r <= lastRow(); r++) {
+                    for (int c = firstColumn(); c <= lastColumn(); c++) {
+                        binned[ends[r * columns + c]++] = i;
+                    }
+                }
+            } else {
+                for (int t = 0; t < tiles; t++) {
+                    binned[ends[t]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first column of tiles the last bounds found reach.
+     * @return the column
+     */
+    private int firstColumn() {
+        return Math.max(0, Math.floorDiv(box[0], tile));
+    }
+
+    /**
+     * Returns the last column of tiles the last bounds found reach.
+     * @return the column
+     */
+    private int lastColumn() {
+        return Math.min(columns - 1, Math.floorDiv(box[2], tile));
+    }
+
+    /**
+     * Returns the first row of tiles the last bounds found reach.
+     * @return the row
+     */
+    private int firstRow() {
+        return Math.max(0, Math.floorDiv(box[1], tile));
+    }
+
+    /**
+     * Returns the last row of tiles the last bounds found reach.
+     * @return the row
+     */
+    private int lastRow() {
+        return Math.min(rows - 1, Math.floorDiv(box[3], tile));
+    }
+
+    /**
+     * Returns the number of frames drawn.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the average time it took to draw a frame.
+     * @return the mean time in microseconds
+     */
+    public double getMeanMicros() {
+        return frames == 0 ? 0 : nanos / 1e3 / frames;
+    }
+
+    @Override
+    public String toString() {
+        return "frames: " + frames + ", mean: " + Math.round(getMeanMicros()) + "us, tiles: " + tiles
+                + " of " + tile + "px, threads: " + (pool == null ? 1 : pool.getParallelism());
+    }
+
+    /**
+     * Draws a range of tiles, splitting it in half until a few tiles are left.
+     */
+    private final class TileTask extends RecursiveAction {
+        /**
+         * The most tiles a task draws without splitting.
+         */
+        private static final int TILES_PER_TASK = 4;
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructs a task for a range of tiles.
+         * @param from the first tile
+         * @param to one past the last tile
+         */
+        private TileTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (pool != null && to - from > TILES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(from, mid), new TileTask(mid, to));
+                return;
+            }
+            SoftwareDrawSurface surface = new SoftwareDrawSurface(pixels, width, height, glyphs);
+            for (int i = from; i < to; i++) {
+                int x = (i % columns) * tile;
+                int y = (i / columns) * tile;
+                surface.clip(x, y, tile, tile);
+                surface.setColor(background);
+                surface.fillRectangle(x, y, tile, tile);
+                frame.replay(surface, binned, starts[i], ends[i]);
+            }
+        }
+    }
+}
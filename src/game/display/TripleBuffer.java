@@ -0,0 +1,78 @@
+package game.display;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * TripleBuffer hands buffers from one producer thread to one consumer thread without locks.
+ * The producer fills its back buffer and publishes it, swapping it with the middle one.
+ * The consumer takes the middle buffer in exchange for its front buffer when a new one was published.
+ * Each side only ever touches its own buffer, so neither waits for the other: the producer never
+ * blocks on a slow consumer, it just replaces the frame the consumer has not taken yet, and the
+ * consumer always gets the latest complete buffer.
+ * @param <T> the type of the buffers
+ */
+public final class TripleBuffer<T> {
+    /**
+     * Set in the middle slot's state when it holds a buffer the consumer has not taken.
+     */
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;
+    private int front = 1;
+
+    /**
+     * Constructs a triple buffer with three buffers made by a factory.
+     * @param factory makes each buffer
+     */
+    public TripleBuffer(Supplier<T> factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Factory cannot be null");
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.get();
+        }
+    }
+
+    /**
+     * Returns the buffer the producer fills. Only the producer thread may call this.
+     * @return the back buffer
+     */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Hands the back buffer to the consumer and gives the producer another one to fill.
+     * Only the producer thread may call this.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Takes the latest published buffer, if there is one the consumer has not taken yet.
+     * Only the consumer thread may call this.
+     * @return true if front() now returns a newly published buffer
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX;
+        return true;
+    }
+
+    /**
+     * Returns the buffer the consumer reads. Only the consumer thread may call this.
+     * @return the front buffer
+     */
+    @SuppressWarnings("unchecked")
+    public T front() {
+        return (T) buffers[front];
+    }
+}
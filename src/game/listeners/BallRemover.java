@@ -4,6 +4,7 @@ import game.Game;
 import game.objects.Ball;
 import game.objects.Block;
 import game.Counter;
+import game.metrics.RemovalEvent;
 
 /**
  * BallRemover is a HitListener that removes balls from the game
@@ -33,5 +34,6 @@ public class BallRemover implements HitListener {
     public void hitEvent(Block beingHit, Ball hitter) {
         hitter.removeFromGame(this.game);
         this.remainingBalls.decrease(1);
+        RemovalEvent.emit("ball", remainingBalls.getValue());
     }
 }
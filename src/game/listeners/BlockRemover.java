@@ -4,6 +4,7 @@ import game.Game;
 import game.objects.Ball;
 import game.objects.Block;
 import game.Counter;
+import game.metrics.RemovalEvent;
 
 /**
  * BlockRemover is a HitListener that removes blocks from the game
@@ -37,6 +38,7 @@ public class BlockRemover implements HitListener {
             beingHit.removeHitListener(this);
             beingHit.removeFromGame(game);
             remainingBlocks.decrease(1);
+            RemovalEvent.emit("block", remainingBlocks.getValue());
         }
     }
 }
@@ -0,0 +1,30 @@
+package game.listeners;
+
+import game.collision.Collidable;
+
+/**
+ * EnvironmentListener interface for objects that want to be notified when the collidables
+ * in a game environment change.
+ */
+public interface EnvironmentListener {
+    /**
+     * This method is called after a collidable was added to the environment.
+     *
+     * @param c the collidable that was added
+     */
+    void collidableAdded(Collidable c);
+
+    /**
+     * This method is called after a collidable was removed from the environment.
+     *
+     * @param c the collidable that was removed
+     */
+    void collidableRemoved(Collidable c);
+
+    /**
+     * This method is called after a collidable changed its collision rectangle.
+     *
+     * @param c the collidable that moved
+     */
+    void collidableMoved(Collidable c);
+}
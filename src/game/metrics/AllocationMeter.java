@@ -0,0 +1,130 @@
+package game.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * AllocationMeter counts the bytes a thread allocates between two points, frame after frame,
+ * with the JVM's per-thread allocation counter. Only the thread that calls begin and end is
+ * counted, so allocations made by physics or render threads are not. On a JVM without the counter
+ * every frame counts as 0 bytes and isSupported returns false.
+ */
+public class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final LogHistogram bytes = new LogHistogram();
+    private long start;
+    private long total;
+    private long balls;
+
+    /**
+     * Finds the JVM's per-thread allocation counter and turns it on.
+     * @return the thread bean, or null if the JVM cannot count allocations per thread
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return bean;
+    }
+
+    /**
+     * Returns whether this JVM can count allocations per thread.
+     * @return true if the meter counts anything
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Returns the number of bytes the calling thread has allocated since it started.
+     * @return the number of bytes, or 0 if the JVM cannot count them
+     */
+    public static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Marks the start of a frame.
+     */
+    public void begin() {
+        start = allocatedBytes();
+    }
+
+    /**
+     * Marks the end of a frame and counts what the thread allocated since begin.
+     * @param ballCount the number of balls in the frame, for the bytes per ball
+     */
+    public void end(int ballCount) {
+        long used = allocatedBytes() - start;
+        bytes.record(used);
+        total += used;
+        balls += ballCount;
+    }
+
+    /**
+     * Returns the histogram of bytes allocated per frame.
+     * @return the histogram
+     */
+    public LogHistogram getHistogram() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of frames counted.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return bytes.getCount();
+    }
+
+    /**
+     * Returns the number of bytes allocated over all frames counted.
+     * @return the bytes
+     */
+    public long getTotalBytes() {
+        return total;
+    }
+
+    /**
+     * Returns the mean number of bytes allocated per frame.
+     * @return the bytes per frame
+     */
+    public double getBytesPerFrame() {
+        return bytes.getMean();
+    }
+
+    /**
+     * Returns the bytes allocated per frame divided by the balls in it, over all frames counted.
+     * @return the bytes per ball per frame, or 0 if no frame had balls
+     */
+    public double getBytesPerBall() {
+        return balls == 0 ? 0 : (double) total / balls;
+    }
+
+    /**
+     * Forgets every frame counted.
+     */
+    public void reset() {
+        bytes.reset();
+        total = 0;
+        balls = 0;
+    }
+
+    @Override
+    public String toString() {
+        if (!isSupported()) {
+            return "not supported by this JVM";
+        }
+        return String.format(Locale.ROOT, "frames: %d, mean: %.0f B/frame (%.1f B/ball),"
+                        + " p50: %d B, p99: %d B, max: %d B", getFrames(), getBytesPerFrame(), getBytesPerBall(),
+                bytes.getPercentile(50), bytes.getPercentile(99), bytes.getMax());
+    }
+}
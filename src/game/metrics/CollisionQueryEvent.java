@@ -0,0 +1,49 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * CollisionQueryEvent is a Flight Recorder event spanning one collision query of the game environment.
+ * There are thousands of queries a second, so by default only those slower than 10 microseconds
+ * are recorded, and without a stack trace.
+ */
+@Name("pong.CollisionQuery")
+@Label("Collision Query")
+@Category({"Pong", "Physics"})
+@Description("A circle swept through the collidables of the game environment")
+@Threshold("10 us")
+@StackTrace(false)
+public class CollisionQueryEvent extends jdk.jfr.Event {
+    @Label("Radius")
+    private double radius;
+
+    @Label("Candidates")
+    @Description("The collision rectangles swept exactly")
+    private int candidates;
+
+    @Label("Hit")
+    private boolean hit;
+
+    @Label("Cached")
+    @Description("Whether the ball's cache of free space answered without searching the grid")
+    private boolean cached;
+
+    /**
+     * Fills in the event before it is committed.
+     * @param circle the radius of the swept circle
+     * @param tests the collision rectangles swept exactly
+     * @param found whether the circle touches a collidable
+     * @param fromCache whether the ball's cache answered the query
+     */
+    public void set(double circle, int tests, boolean found, boolean fromCache) {
+        this.radius = circle;
+        this.candidates = tests;
+        this.hit = found;
+        this.cached = fromCache;
+    }
+}
@@ -0,0 +1,49 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * FrameEvent is a Flight Recorder event spanning one frame of the game loop, from the start of its
+ * ticks to the end of showing it. By default every frame is recorded; a threshold such as
+ * "pong.Frame#threshold=20 ms" keeps only the slow ones.
+ */
+@Name("pong.Frame")
+@Label("Frame")
+@Category({"Pong", "Frames"})
+@Description("One frame of the game loop: its ticks, recording, drawing and showing")
+@Threshold("0 ms")
+@StackTrace(false)
+public class FrameEvent extends jdk.jfr.Event {
+    @Label("Sequence")
+    @Description("The number of the frame in its run")
+    private long sequence;
+
+    @Label("Ticks")
+    @Description("The ticks simulated in the frame")
+    private int ticks;
+
+    @Label("Balls")
+    private int balls;
+
+    @Label("Blocks")
+    private int blocks;
+
+    /**
+     * Fills in the event before it is committed.
+     * @param frame the number of the frame in its run
+     * @param tickCount the ticks simulated in the frame
+     * @param ballCount the balls left
+     * @param blockCount the blocks left
+     */
+    public void set(long frame, int tickCount, int ballCount, int blockCount) {
+        this.sequence = frame;
+        this.ticks = tickCount;
+        this.balls = ballCount;
+        this.blocks = blockCount;
+    }
+}
@@ -0,0 +1,329 @@
+package game.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FrameProfiler times the phases of every frame of the game loop into LogHistograms.
+ * The game loop marks the start and end of each frame and times its own phases; the time spent in
+ * collision queries and hit listeners is added up from wherever they run during the frame, and
+ * counted once per frame when it ends. Collision queries may run on several physics threads, so
+ * their time is the sum over the threads. Update includes the collision queries and listeners
+ * made by the ticks. The bytes the game loop's thread allocates in each frame are counted too, by an
+ * AllocationMeter. The profiler is off until enabled, and then costs two clock reads per timed call.
+ * With a dump directory set, the histograms are written there as profile.json and profile.csv
+ * every dump period.
+ */
+public class FrameProfiler {
+    /**
+     * The parts of a frame that are timed.
+     */
+    public enum Phase {
+        /**
+         * The whole frame, from the start of its ticks to the end of showing it, without waiting for the next.
+         */
+        FRAME("frame"),
+        /**
+         * The ticks run in the frame: sprite updates, collision queries and hit listeners.
+         */
+        UPDATE("update"),
+        /**
+         * The collision queries made by the frame's ticks, summed over threads.
+         */
+        COLLISION("collision"),
+        /**
+         * The hit listeners called by the frame's ticks.
+         */
+        LISTENERS("listeners"),
+        /**
+         * Recording the sprites into the frame's draw calls.
+         */
+        RECORD("record"),
+        /**
+         * Drawing the recorded frame on the display's surface.
+         */
+        DRAW("draw"),
+        /**
+         * Showing the drawn surface on the display.
+         */
+        SHOW("show");
+
+        private final String label;
+
+        /**
+         * Constructor.
+         * @param label the name of the phase in the overlay and the dumps
+         */
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the name of the phase in the overlay and the dumps.
+         * @return the name
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final LogHistogram[] histograms = new LogHistogram[Phase.values().length];
+    private final LongAdder collisionNanos = new LongAdder();
+    private final AllocationMeter allocations = new AllocationMeter();
+    private volatile boolean enabled;
+    private long listenerNanos;
+    private long frameStart;
+    private long frames;
+    private Path dumpDirectory;
+    private long dumpPeriod;
+    private long lastDump;
+
+    /**
+     * Constructor for a profiler that is off.
+     */
+    public FrameProfiler() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LogHistogram();
+        }
+    }
+
+    /**
+     * Returns whether frames are being timed.
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns timing on or off. The histograms keep what they counted.
+     * @param enabled true to time frames
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Writes the histograms to a directory every period, and turns timing on.
+     * @param directory the directory, made if missing
+     * @param periodNanos the time between two dumps in nanoseconds
+     */
+    public void setDump(Path directory, long periodNanos) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Dump directory cannot be null");
+        }
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Dump period must be positive");
+        }
+        this.dumpDirectory = directory;
+        this.dumpPeriod = periodNanos;
+        this.lastDump = System.nanoTime();
+        this.enabled = true;
+    }
+
+    /**
+     * Marks the start of a frame. Called by the game loop.
+     */
+    public void beginFrame() {
+        allocations.begin();
+        frameStart = System.nanoTime();
+        collisionNanos.reset();
+        listenerNanos = 0;
+    }
+
+    /**
+     * Marks the end of a frame: counts its whole time, the collision and listener time it added up
+     * and the bytes it allocated, and writes the dump when it is due. Called by the game loop.
+     * @param balls the number of balls in the frame
+     */
+    public void endFrame(int balls) {
+        long now = System.nanoTime();
+        allocations.end(balls);
+        record(Phase.COLLISION, collisionNanos.sum());
+        record(Phase.LISTENERS, listenerNanos);
+        record(Phase.FRAME, now - frameStart);
+        frames++;
+        if (dumpDirectory != null && now - lastDump >= dumpPeriod) {
+            lastDump = now;
+            dump(dumpDirectory);
+        }
+    }
+
+    /**
+     * Counts the time of a phase. Each phase must be recorded by a single thread.
+     * @param phase the phase
+     * @param nanos the time in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Adds the time of a collision query to the frame. May be called from any thread.
+     * @param nanos the time in nanoseconds
+     */
+    public void addCollisionNanos(long nanos) {
+        collisionNanos.add(nanos);
+    }
+
+    /**
+     * Adds the time hit listeners took to the frame. Called on the game loop's thread.
+     * @param nanos the time in nanoseconds
+     */
+    public void addListenerNanos(long nanos) {
+        listenerNanos += nanos;
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     * @param phase the phase
+     * @return the histogram, in nanoseconds
+     */
+    public LogHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Returns the meter of the bytes allocated per frame.
+     * @return the allocation meter
+     */
+    public AllocationMeter getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * Forgets every frame counted, for example to leave out the frames of a warm-up.
+     */
+    public void reset() {
+        for (LogHistogram h : histograms) {
+            h.reset();
+        }
+        allocations.reset();
+        frames = 0;
+    }
+
+    /**
+     * Returns the number of frames timed.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Writes the histograms to profile.json and profile.csv in a directory. Each file is written
+     * next to the old one and then moved over it, so a reader never sees half a file.
+     * @param directory the directory, made if missing
+     */
+    public void dump(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            write(directory.resolve("profile.json"), true);
+            write(directory.resolve("profile.csv"), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing the frame profile failed", e);
+        }
+    }
+
+    /**
+     * Writes one dump file through a temporary file.
+     * @param file the file
+     * @param json true for JSON, false for CSV
+     * @throws IOException if writing fails
+     */
+    private void write(Path file, boolean json) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            if (json) {
+                writeJson(out);
+            } else {
+                writeCsv(out);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes the histograms as a JSON object, times in microseconds and allocations in bytes.
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\"frames\": " + frames + ", \"unit\": \"us\", \"phases\": {");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            LogHistogram h = getHistogram(phases[i]);
+            out.write(String.format(Locale.ROOT,
+                    "%s\n  \"%s\": {\"count\": %d, \"mean\": %.1f, \"p50\": %.1f, \"p99\": %.1f,"
+                            + " \"p99.9\": %.1f, \"max\": %.1f}",
+                    i == 0 ? "" : ",", phases[i].getLabel(), h.getCount(), h.getMean() / 1e3,
+                    h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3,
+                    h.getMax() / 1e3));
+        }
+        LogHistogram a = allocations.getHistogram();
+        out.write(String.format(Locale.ROOT,
+                "},\n\"allocation\": {\"supported\": %b, \"mean\": %.0f, \"perBall\": %.1f, \"p50\": %d,"
+                        + " \"p99\": %d, \"p99.9\": %d, \"max\": %d}}\n",
+                AllocationMeter.isSupported(), a.getMean(), allocations.getBytesPerBall(), a.getPercentile(50),
+                a.getPercentile(99), a.getPercentile(99.9), a.getMax()));
+    }
+
+    /**
+     * Writes the histograms as CSV, a row per phase in microseconds and a last row of allocations in bytes.
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("phase,unit,count,mean,p50,p99,p99.9,max\n");
+        for (Phase phase : Phase.values()) {
+            LogHistogram h = getHistogram(phase);
+            out.write(String.format(Locale.ROOT, "%s,us,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n", phase.getLabel(),
+                    h.getCount(), h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3,
+                    h.getPercentile(99.9) / 1e3, h.getMax() / 1e3));
+        }
+        LogHistogram a = allocations.getHistogram();
+        out.write(String.format(Locale.ROOT, "allocation,bytes,%d,%.0f,%d,%d,%d,%d%n", a.getCount(), a.getMean(),
+                a.getPercentile(50), a.getPercentile(99), a.getPercentile(99.9), a.getMax()));
+    }
+
+    /**
+     * Describes one phase in a line: its median, tail percentiles and maximum in microseconds.
+     * @param phase the phase
+     * @return the line
+     */
+    public String describe(Phase phase) {
+        LogHistogram h = getHistogram(phase);
+        return String.format(Locale.ROOT, "%-9s p50 %6.0f  p99 %6.0f  p99.9 %6.0f  max %6.0f us", phase.getLabel(),
+                h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3, h.getMax() / 1e3);
+    }
+
+    /**
+     * Describes the allocations in a line: the mean, median, tail percentile and maximum bytes per frame.
+     * @return the line
+     */
+    public String describeAllocations() {
+        LogHistogram h = allocations.getHistogram();
+        return String.format(Locale.ROOT, "%-9s mean %6.0f  p50 %6d  p99 %6d  max %6d B", "alloc",
+                h.getMean(), h.getPercentile(50), h.getPercentile(99), h.getMax());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("frames: ").append(frames);
+        for (Phase phase : Phase.values()) {
+            LogHistogram h = getHistogram(phase);
+            sb.append(String.format(Locale.ROOT, ", %s p50/p99/max: %d/%d/%dus", phase.getLabel(),
+                    h.getPercentile(50) / 1000, h.getPercentile(99) / 1000, h.getMax() / 1000));
+        }
+        sb.append(String.format(Locale.ROOT, ", allocation: %.0f B/frame (%.1f B/ball)",
+                allocations.getBytesPerFrame(), allocations.getBytesPerBall()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package game.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * GameMetrics holds the numbers a metrics endpoint serves about a running game: frame time
+ * quantiles, the ticks, collision queries, hits and bytes allocated so far and per second, and the
+ * live ball and block counts.
+ * The game loop publishes into it at the end of every frame, and any other thread may read it at
+ * the same time without locking: the totals are kept in volatile fields written only by the game
+ * loop, and the quantiles and rates are worked out by the game loop over a window of WINDOW_NANOS
+ * and published the same way when the window ends, so a reader never holds the game loop up.
+ * A reader may see the fields of two neighbouring frames mixed, which is fine for scraping.
+ * Only the game loop's own thread is counted in the bytes allocated.
+ */
+public class GameMetrics {
+    /**
+     * The length of the window the frame time quantiles and the rates are taken over, in nanoseconds.
+     */
+    public static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Written and read by the game loop only.
+    private final LogHistogram window = new LogHistogram();
+    private long windowStart;
+    private long windowTicks;
+    private long windowQueries;
+    private long windowHits;
+    private long windowAllocated;
+    private long allocatedBase = -1;
+
+    // Written by the game loop, read by anyone.
+    private final AtomicLongArray frameQuantiles = new AtomicLongArray(QUANTILES.length);
+    private volatile long frameMax;
+    private volatile boolean windowed;
+    private volatile long frames;
+    private volatile long frameNanos;
+    private volatile long ticks;
+    private volatile long queries;
+    private volatile long hits;
+    private volatile long allocated;
+    private volatile int balls;
+    private volatile int blocks;
+    private volatile double ticksPerSecond;
+    private volatile double queriesPerSecond;
+    private volatile double hitsPerSecond;
+    private volatile double allocatedPerSecond;
+
+    /**
+     * Publishes the end of a frame. Must always be called from the same thread, the game loop's.
+     * @param nanos the time the frame's work took
+     * @param tickCount the ticks simulated since the game started
+     * @param ballCount the number of live balls
+     * @param blockCount the number of blocks left
+     * @param queryCount the collision queries that searched the environment since the game started
+     * @param hitCount the hits resolved since the game started
+     */
+    public void publishFrame(long nanos, long tickCount, int ballCount, int blockCount, long queryCount,
+                             long hitCount) {
+        long now = System.nanoTime();
+        long bytes = AllocationMeter.allocatedBytes();
+        if (allocatedBase < 0) {
+            allocatedBase = bytes;
+            startWindow(now, tickCount, queryCount, hitCount, 0);
+        }
+        window.record(nanos);
+        frames = frames + 1;
+        frameNanos = frameNanos + nanos;
+        ticks = tickCount;
+        balls = ballCount;
+        blocks = blockCount;
+        queries = queryCount;
+        hits = hitCount;
+        allocated = bytes - allocatedBase;
+        long elapsed = now - windowStart;
+        if (elapsed >= WINDOW_NANOS) {
+            double seconds = elapsed / 1e9;
+            ticksPerSecond = (tickCount - windowTicks) / seconds;
+            queriesPerSecond = (queryCount - windowQueries) / seconds;
+            hitsPerSecond = (hitCount - windowHits) / seconds;
+            allocatedPerSecond = (allocated - windowAllocated) / seconds;
+            for (int i = 0; i < QUANTILES.length; i++) {
+                frameQuantiles.set(i, window.getPercentile(QUANTILES[i] * 100));
+            }
+            frameMax = window.getMax();
+            windowed = true;
+            window.reset();
+            startWindow(now, tickCount, queryCount, hitCount, allocated);
+        }
+    }
+
+    /**
+     * Remembers where a window starts, to work out its rates when it ends.
+     * @param now the time the window starts
+     * @param tickCount the ticks so far
+     * @param queryCount the collision queries so far
+     * @param hitCount the hits so far
+     * @param bytes the bytes allocated so far
+     */
+    private void startWindow(long now, long tickCount, long queryCount, long hitCount, long bytes) {
+        windowStart = now;
+        windowTicks = tickCount;
+        windowQueries = queryCount;
+        windowHits = hitCount;
+        windowAllocated = bytes;
+    }
+
+    /**
+     * Returns the number of frames published.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format, version 0.0.4.
+     * Times are in seconds, as Prometheus expects. Until the first window ends, the quantiles are NaN.
+     * May be called from any thread.
+     * @return the metrics, one sample per line
+     */
+    public String toPrometheusText() {
+        StringBuilder sb = new StringBuilder(2048);
+        header(sb, "pong_frame_seconds", "summary",
+                "Time of the game loop's frames, quantiles over the last window.");
+        boolean known = windowed;
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append("pong_frame_seconds{quantile=\"").append(QUANTILES[i]).append("\"} ");
+            sb.append(known ? String.format(Locale.ROOT, "%.9f", frameQuantiles.get(i) / 1e9) : "NaN").append('\n');
+        }
+        sample(sb, "pong_frame_seconds_sum", frameNanos / 1e9);
+        sample(sb, "pong_frame_seconds_count", frames);
+        gauge(sb, "pong_frame_max_seconds", "Longest frame of the last window.", frameMax / 1e9);
+        counter(sb, "pong_ticks_total", "Ticks simulated.", ticks);
+        gauge(sb, "pong_ticks_per_second", "Ticks simulated per second over the last window.", ticksPerSecond);
+        gauge(sb, "pong_balls", "Live balls.", balls);
+        gauge(sb, "pong_blocks", "Blocks left.", blocks);
+        counter(sb, "pong_collision_queries_total", "Collision queries that searched the environment's"
+                + " static index; ones a ball's cache answered are left out.", queries);
+        gauge(sb, "pong_collision_queries_per_second", "Collision queries per second over the last window.",
+                queriesPerSecond);
+        counter(sb, "pong_hits_total", "Hits resolved.", hits);
+        gauge(sb, "pong_hits_per_second", "Hits resolved per second over the last window.", hitsPerSecond);
+        counter(sb, "pong_allocated_bytes_total", "Bytes allocated by the game loop's thread.", allocated);
+        gauge(sb, "pong_allocated_bytes_per_second", "Bytes allocated by the game loop's thread per second"
+                + " over the last window.", allocatedPerSecond);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     * @param sb where to write
+     * @param name the metric's name
+     * @param type the metric's type
+     * @param help what the metric counts
+     */
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a counter.
+     * @param sb where to write
+     * @param name the counter's name, ending in _total
+     * @param help what the counter counts
+     * @param value the count
+     */
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "counter", help);
+        sample(sb, name, value);
+    }
+
+    /**
+     * Writes a gauge.
+     * @param sb where to write
+     * @param name the gauge's name
+     * @param help what the gauge measures
+     * @param value the value
+     */
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        header(sb, name, "gauge", help);
+        sample(sb, name, value);
+    }
+
+    /**
+     * Writes a gauge with a whole number value.
+     * @param sb where to write
+     * @param name the gauge's name
+     * @param help what the gauge measures
+     * @param value the value
+     */
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "gauge", help);
+        sample(sb, name, value);
+    }
+
+    /**
+     * Writes a whole number sample line.
+     * @param sb where to write
+     * @param name the sample's name
+     * @param value the value
+     */
+    private static void sample(StringBuilder sb, String name, long value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a sample line.
+     * @param sb where to write
+     * @param name the sample's name
+     * @param value the value
+     */
+    private static void sample(StringBuilder sb, String name, double value) {
+        sb.append(String.format(Locale.ROOT, "%s %.6g\n", name, value));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "frames: %d, ticks: %d (%.0f/s), queries: %.0f/s, hits: %.0f/s,"
+                + " allocation: %.0f B/s", frames, ticks, ticksPerSecond, queriesPerSecond, hitsPerSecond,
+                allocatedPerSecond);
+    }
+}
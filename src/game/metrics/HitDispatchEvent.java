@@ -0,0 +1,31 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * HitDispatchEvent is a Flight Recorder event spanning one HitListener.hitEvent call.
+ */
+@Name("pong.HitDispatch")
+@Label("Hit Dispatch")
+@Category({"Pong", "Listeners"})
+@Description("A hit listener told about a ball hitting a block")
+@Threshold("0 ms")
+@StackTrace(false)
+public class HitDispatchEvent extends jdk.jfr.Event {
+    @Label("Listener")
+    @Description("The class of the listener")
+    private String listener;
+
+    /**
+     * Fills in the event before it is committed.
+     * @param type the class of the listener
+     */
+    public void set(Class<?> type) {
+        this.listener = type.getSimpleName();
+    }
+}
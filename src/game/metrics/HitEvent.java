@@ -0,0 +1,41 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * HitEvent is a Flight Recorder event spanning one call to Collidable.hit, listeners included.
+ */
+@Name("pong.Hit")
+@Label("Hit")
+@Category({"Pong", "Physics"})
+@Description("A ball hitting a collidable, which bounces it and notifies its listeners")
+@Threshold("0 ms")
+@StackTrace(false)
+public class HitEvent extends jdk.jfr.Event {
+    @Label("Collidable")
+    @Description("The class of the collidable that was hit")
+    private String collidable;
+
+    @Label("X")
+    private double x;
+
+    @Label("Y")
+    private double y;
+
+    /**
+     * Fills in the event before it is committed.
+     * @param type the class of the collidable that was hit
+     * @param contactX the x-coordinate of the contact point
+     * @param contactY the y-coordinate of the contact point
+     */
+    public void set(Class<?> type, double contactX, double contactY) {
+        this.collidable = type.getSimpleName();
+        this.x = contactX;
+        this.y = contactY;
+    }
+}
@@ -0,0 +1,338 @@
+package game.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.PrintStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * JankMonitor watches the frames of the game loop for ones that take longer than a budget, and
+ * writes a one-line incident record for each, saying what else was going on: the frames before it,
+ * any garbage collection that overlapped it with the heap before and after, time the JIT compiler
+ * spent, the bytes the frame allocated, and how many sprites, collidables and balls the scene held.
+ * Each incident gets a cause: "gc" when collection pauses cover at least a quarter of the overrun,
+ * "jit" when the compiler was busy for half of it, and "slow" otherwise, which points at the game's
+ * own work rather than at allocation pressure. Pauses stop the game's thread outright while the
+ * compiler only competes with it for a core, so a smaller share of pauses is enough.
+ * The JVM announces a collection only after it ends, on a thread of its own, so an incident is
+ * held back for a short while before it is written, to give the notification time to arrive.
+ */
+public class JankMonitor implements AutoCloseable {
+    /**
+     * The number of frames before an incident that its record shows.
+     */
+    public static final int TIMELINE = 8;
+    /**
+     * The most incident records kept for getIncidents.
+     */
+    public static final int KEPT_INCIDENTS = 100;
+    private static final long REPORT_DELAY_NANOS = 100_000_000;
+    private static final int KEPT_COLLECTIONS = 64;
+
+    private final long budget;
+    private final long[] durations;
+    private final PrintStream log;
+    private final CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+    private final long uptimeBase = ManagementFactory.getRuntimeMXBean().getUptime();
+    private final long nanoBase = System.nanoTime();
+    private final Deque<Collection> collections = new ArrayDeque<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::collected;
+    private final Deque<Incident> pending = new ArrayDeque<>();
+    private final List<String> incidents = new ArrayList<>();
+    private long frames;
+    private long frameStart;
+    private long compileStart;
+    private long allocatedStart;
+    private long gcIncidents;
+    private long jitIncidents;
+    private long slowIncidents;
+
+    /**
+     * Constructor. Starts listening for garbage collections.
+     * @param budgetNanos the time a frame may take before it counts as an incident
+     * @param history the number of frame durations kept, at least TIMELINE
+     * @param log where incident records are written, or null to only keep them
+     */
+    public JankMonitor(long budgetNanos, int history, PrintStream log) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive");
+        }
+        if (history < TIMELINE) {
+            throw new IllegalArgumentException("History must hold at least " + TIMELINE + " frames");
+        }
+        this.budget = budgetNanos;
+        this.durations = new long[history];
+        this.log = log;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Marks the start of a frame. Called by the game loop.
+     */
+    public void beginFrame() {
+        frameStart = System.nanoTime();
+        compileStart = compileMillis();
+        allocatedStart = AllocationMeter.allocatedBytes();
+    }
+
+    /**
+     * Marks the end of a frame and keeps its duration. Incidents held back long enough are written.
+     * @return true if the frame went over the budget; the game loop then calls describeScene
+     */
+    public boolean endFrame() {
+        long end = System.nanoTime();
+        long duration = end - frameStart;
+        durations[(int) (frames % durations.length)] = duration;
+        frames++;
+        flush(end - REPORT_DELAY_NANOS);
+        if (duration <= budget) {
+            return false;
+        }
+        Incident incident = new Incident();
+        incident.frame = frames - 1;
+        incident.start = frameStart;
+        incident.end = end;
+        incident.compileMillis = compileMillis() - compileStart;
+        incident.allocated = AllocationMeter.allocatedBytes() - allocatedStart;
+        incident.timeline = timeline();
+        pending.add(incident);
+        return true;
+    }
+
+    /**
+     * Adds the size of the scene to the incident of the frame that just ended.
+     * @param sprites the number of live sprites
+     * @param collidables the number of collidables
+     * @param balls the number of balls
+     */
+    public void describeScene(int sprites, int collidables, int balls) {
+        Incident incident = pending.peekLast();
+        if (incident != null) {
+            incident.sprites = sprites;
+            incident.collidables = collidables;
+            incident.balls = balls;
+        }
+    }
+
+    /**
+     * Returns the durations of the last TIMELINE frames, the newest last, in milliseconds.
+     * @return the timeline
+     */
+    private String timeline() {
+        StringBuilder sb = new StringBuilder("[");
+        long first = Math.max(0, frames - TIMELINE);
+        for (long f = first; f < frames; f++) {
+            if (f > first) {
+                sb.append(' ');
+            }
+            sb.append(String.format(Locale.ROOT, "%.1f", durations[(int) (f % durations.length)] / 1e6));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Writes the incidents of frames that ended before a time.
+     * @param before the time, from System.nanoTime
+     */
+    private void flush(long before) {
+        while (!pending.isEmpty() && pending.peekFirst().end <= before) {
+            write(pending.pollFirst());
+        }
+    }
+
+    /**
+     * Finds the collections that overlapped an incident's frame, picks its cause and writes its record.
+     * @param incident the incident
+     */
+    private void write(Incident incident) {
+        long from = uptimeMillis(incident.start);
+        long to = uptimeMillis(incident.end);
+        long overrun = (incident.end - incident.start - budget) / 1_000_000;
+        StringBuilder gcs = new StringBuilder();
+        long paused = 0;
+        synchronized (collections) {
+            for (Collection c : collections) {
+                // Collection times are whole milliseconds, so allow one either way.
+                if (c.end + 1 >= from && c.start - 1 <= to) {
+                    if (c.pause) {
+                        paused += Math.min(c.end, to) - Math.max(c.start, from);
+                    }
+                    gcs.append(String.format(Locale.ROOT, "; %s %s %dms, heap %dM->%dM", c.name,
+                            c.pause ? "pause" : "concurrent", c.end - c.start, c.before >> 20, c.after >> 20));
+                }
+            }
+        }
+        String cause;
+        if (paused > 0 && paused * 4 >= overrun) {
+            cause = "gc";
+            gcIncidents++;
+        } else if (incident.compileMillis > 0 && incident.compileMillis * 2 >= overrun) {
+            cause = "jit";
+            jitIncidents++;
+        } else {
+            cause = "slow";
+            slowIncidents++;
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        String record = String.format(Locale.ROOT,
+                "Jank: frame %d took %.1fms (budget %.1fms), cause %s, frames %s%s; jit %dms; alloc %dK;"
+                        + " heap now %dM; sprites %d, collidables %d, balls %d",
+                incident.frame, (incident.end - incident.start) / 1e6, budget / 1e6, cause, incident.timeline,
+                gcs.length() == 0 ? "; no gc" : gcs, incident.compileMillis, incident.allocated >> 10,
+                heap.getUsed() >> 20, incident.sprites, incident.collidables, incident.balls);
+        if (incidents.size() == KEPT_INCIDENTS) {
+            incidents.remove(0);
+        }
+        incidents.add(record);
+        if (log != null) {
+            log.println(record);
+        }
+    }
+
+    /**
+     * Keeps a collection the JVM announced. Runs on the JVM's notification thread.
+     * @param notification the notification
+     * @param handback unused
+     */
+    private void collected(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gc = info.getGcInfo();
+        Collection c = new Collection();
+        c.name = info.getGcName();
+        // Concurrent cycles run next to the game and are reported by collectors named for them.
+        c.pause = !info.getGcName().contains("Concurrent") && !info.getGcAction().contains("concurrent");
+        c.start = gc.getStartTime();
+        c.end = gc.getEndTime();
+        c.before = used(gc.getMemoryUsageBeforeGc());
+        c.after = used(gc.getMemoryUsageAfterGc());
+        synchronized (collections) {
+            if (collections.size() == KEPT_COLLECTIONS) {
+                collections.removeFirst();
+            }
+            collections.addLast(c);
+        }
+    }
+
+    /**
+     * Adds up the memory used in a collection's pools.
+     * @param pools the usage of each pool
+     * @return the bytes used
+     */
+    private static long used(Map<String, MemoryUsage> pools) {
+        long sum = 0;
+        for (MemoryUsage u : pools.values()) {
+            sum += u.getUsed();
+        }
+        return sum;
+    }
+
+    /**
+     * Converts a System.nanoTime time to milliseconds since the JVM started, the time base of collections.
+     * @param nanos the time
+     * @return the JVM uptime at that time
+     */
+    private long uptimeMillis(long nanos) {
+        return uptimeBase + (nanos - nanoBase) / 1_000_000;
+    }
+
+    /**
+     * Returns the time the JIT compiler has spent so far.
+     * @return the time in milliseconds, or 0 if the JVM does not say
+     */
+    private long compileMillis() {
+        return compiler != null && compiler.isCompilationTimeMonitoringSupported()
+                ? compiler.getTotalCompilationTime() : 0;
+    }
+
+    /**
+     * Returns the number of frames watched.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the last incident records written, oldest first.
+     * @return the records
+     */
+    public List<String> getIncidents() {
+        return Collections.unmodifiableList(incidents);
+    }
+
+    /**
+     * Writes the incidents still held back and stops listening for garbage collections.
+     */
+    @Override
+    public void close() {
+        flush(Long.MAX_VALUE);
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone.
+            }
+        }
+        emitters.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "frames: " + frames + ", over " + budget / 1000 + "us: " + (gcIncidents + jitIncidents + slowIncidents)
+                + " (gc " + gcIncidents + ", jit " + jitIncidents + ", slow " + slowIncidents + ")";
+    }
+
+    /**
+     * A frame that went over the budget, waiting to be written.
+     */
+    private static final class Incident {
+        private long frame;
+        private long start;
+        private long end;
+        private long compileMillis;
+        private long allocated;
+        private String timeline;
+        private int sprites;
+        private int collidables;
+        private int balls;
+    }
+
+    /**
+     * A garbage collection the JVM announced, in milliseconds since it started.
+     */
+    private static final class Collection {
+        private String name;
+        private boolean pause;
+        private long start;
+        private long end;
+        private long before;
+        private long after;
+    }
+}
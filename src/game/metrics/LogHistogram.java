@@ -0,0 +1,130 @@
+package game.metrics;
+
+import java.util.Arrays;
+
+/**
+ * LogHistogram counts values, such as durations or byte counts, in a fixed number of buckets whose
+ * width grows with the value.
+ * Below 2^SUB_BITS every value has a bucket of its own; above, each power of two is split into
+ * 2^SUB_BITS buckets, so a percentile is never off by more than about 3% of the value, from a
+ * nanosecond to the largest value counted, whatever the number of values. Recording a value
+ * only increments a counter and never allocates.
+ * A histogram has one writer; other threads may read it while it is written, and then see
+ * counts that are at most a few values behind.
+ */
+public class LogHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /**
+     * The largest value counted, about 18 minutes in nanoseconds or a terabyte. Larger values are counted as it.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Returns the bucket of a value.
+     * @param value the value, from 0 to MAX_VALUE
+     * @return the bucket's index
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket.
+     * @param index the bucket's index
+     * @return the value
+     */
+    private static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Counts a value. Negative values are counted as 0.
+     * @param value the value, usually in nanoseconds
+     */
+    public void record(long value) {
+        long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts[index(v)]++;
+        count++;
+        sum += v;
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    /**
+     * Returns the number of values counted.
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value counted, exactly.
+     * @return the maximum, or 0 if nothing was counted
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values counted, exactly.
+     * @return the mean, or 0 if nothing was counted
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns a value that the given percentage of the values counted are at most.
+     * It is the top of the bucket the percentile falls in, and never more than the maximum.
+     * @param percentile the percentage, from 0 to 100
+     * @return the value, or 0 if nothing was counted
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long total = count;
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets every value counted.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
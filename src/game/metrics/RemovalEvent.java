@@ -0,0 +1,39 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * RemovalEvent is an instant Flight Recorder event for a ball or block taken out of the game.
+ */
+@Name("pong.Removal")
+@Label("Removal")
+@Category({"Pong", "Game"})
+@Description("A ball or block removed from the game")
+@StackTrace(false)
+public class RemovalEvent extends jdk.jfr.Event {
+    @Label("Kind")
+    @Description("\"ball\" or \"block\"")
+    private String kind;
+
+    @Label("Remaining")
+    @Description("How many of its kind are left")
+    private int remaining;
+
+    /**
+     * Records a removal, if removal events are being recorded.
+     * @param what "ball" or "block"
+     * @param left how many of its kind are left
+     */
+    public static void emit(String what, int left) {
+        RemovalEvent event = new RemovalEvent();
+        if (event.shouldCommit()) {
+            event.kind = what;
+            event.remaining = left;
+            event.commit();
+        }
+    }
+}
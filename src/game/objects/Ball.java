@@ -1,24 +1,23 @@
 package game.objects;
 
-import game.collision.Collidable;
+import game.collision.CollisionCache;
 import game.collision.CollisionInfo;
 import game.collision.Sprite;
 import biuoop.DrawSurface;
 import Geomtry.Line;
 import Geomtry.Point;
-import Geomtry.Rectangle;
 import game.Game;
 import game.GameEnvironment;
+import game.ImpactScheduler;
 
 /**
  * Represents a Ball object with a center, radius, color, and velocity.
+ * The ball's state lives in a BallSystem; a Ball is a handle to its slot there.
+ * A ball that is not in a game has a small system of its own.
  */
-public class Ball implements Sprite {
-    private Point center;
-    private int radius;
-    private java.awt.Color color;
-    private Velocity v;
-    private GameEnvironment ge;
+public final class Ball implements Sprite {
+    private BallSystem system;
+    private int slot;
 
     /**
      * Constructor using a Point.
@@ -27,9 +26,7 @@ public class Ball implements Sprite {
      * @param color color of the ball
      */
     public Ball(Point center, int r, java.awt.Color color) {
-        this.center = new Point(center.getX(), center.getY());
-        this.radius = r;
-        this.color = color;
+        this(center.getX(), center.getY(), r, color);
     }
 
     /**
@@ -40,37 +37,71 @@ public class Ball implements Sprite {
      * @param color color of the ball
      */
     public Ball(double x, double y, int r, java.awt.Color color) {
-        this.center = new Point(x, y);
-        this.radius = r;
-        this.color = color;
+        new BallSystem(1).place(this, x, y, r, color);
+    }
+
+    /**
+     * Constructor for a handle to a slot of a ball system.
+     * @param system the system
+     * @param slot the slot
+     */
+    Ball(BallSystem system, int slot) {
+        this.system = system;
+        this.slot = slot;
+    }
+
+    /**
+     * Points the handle at a new slot, after the ball was moved.
+     * @param s the system the ball is in now
+     * @param i the slot the ball is in now
+     */
+    void attach(BallSystem s, int i) {
+        this.system = s;
+        this.slot = i;
+    }
+
+    /**
+     * Returns the system the ball's state lives in.
+     * @return the system
+     */
+    BallSystem system() {
+        return system;
+    }
+
+    /**
+     * Returns the ball's slot in its system.
+     * @return the slot
+     */
+    int slot() {
+        return slot;
     }
 
     /**
      * @return the x-coordinate of the ball's center
      */
     public int getX() {
-        return (int) center.getX();
+        return (int) getCenter().getX();
     }
 
     /**
      * @return the y-coordinate of the ball's center
      */
     public int getY() {
-        return (int) center.getY();
+        return (int) getCenter().getY();
     }
 
     /**
      * @return the ball's radius
      */
     public int getSize() {
-        return radius;
+        return system.radius(slot);
     }
 
     /**
      * @return the ball's color
      */
     public java.awt.Color getColor() {
-        return color;
+        return system.color(slot);
     }
 
     /**
@@ -78,8 +109,9 @@ public class Ball implements Sprite {
      * @param surface the DrawSurface to draw on
      */
     public void drawOn(DrawSurface surface) {
-        surface.setColor(color);
-        surface.fillCircle((int) this.center.getX(), (int) this.center.getY(), this.radius);
+        Point c = getCenter();
+        surface.setColor(getColor());
+        surface.fillCircle((int) c.getX(), (int) c.getY(), getSize());
     }
 
     /**
@@ -87,7 +119,7 @@ public class Ball implements Sprite {
      * @param v the velocity to set
      */
     public void setVelocity(Velocity v) {
-        this.v = new Velocity(v.getDx(), v.getDy());
+        setVelocity(v.getDx(), v.getDy());
     }
 
     /**
@@ -96,108 +128,117 @@ public class Ball implements Sprite {
      * @param dy change in y
      */
     public void setVelocity(double dx, double dy) {
-        this.v = new Velocity(dx, dy);
+        ImpactScheduler scheduler = system.scheduler(slot);
+        if (scheduler == null) {
+            system.setVelocity(slot, dx, dy);
+            return;
+        }
+        advanceTo(scheduler.getTime());
+        system.setVelocity(slot, dx, dy);
+        scheduler.reschedule(this);
     }
 
     /**
      * @return the ball's velocity.
      */
     public Velocity getVelocity() {
-        return v;
+        return new Velocity(system.dx(slot), system.dy(slot));
     }
 
     /**
      * Moves the ball one step based on its velocity.
+     * The whole circle is swept along the step. At each surface it touches the ball bounces
+     * and goes on with the rest of the step, up to the environment's sub-step cap.
      */
     public void moveOneStep() {
-        Line trajectory = calculateTrajectory();
-        CollisionInfo collision = ge.getClosestCollision(trajectory);
-
-        if (collision == null) {
-            this.center = this.v.applyToPoint(this.center);
-        } else {
-            moveToBeforeCollision(collision);
-            this.v = collision.collisionObject().hit(this, collision.collisionPoint(), this.v);
-        }
+        system.moveOne(slot);
+    }
 
-        handleFailSafeOverlap();
+    /**
+     * Returns the ball's cache of space known to be free of collidables.
+     * @return the collision cache
+     */
+    public CollisionCache getCollisionCache() {
+        return system.cache(slot);
     }
+
     /**
-     * Handles the case where the ball is overlapping with the frame.
+     * Resolves a collision found by the impact scheduler.
      * @param collision the collision information
+     * @param time the scheduler time of the collision, in ticks
      */
-    private void moveToBeforeCollision(CollisionInfo collision) {
-        Point collisionPoint = collision.collisionPoint();
-        double dx = this.v.getDx();
-        double dy = this.v.getDy();
-        double fudge = 0.1;
-
-        double newX = collisionPoint.getX() - dx / this.v.getSpeed() * fudge;
-        double newY = collisionPoint.getY() - dy / this.v.getSpeed() * fudge;
-        this.center = new Point(newX, newY);
+    public void collide(CollisionInfo collision, double time) {
+        system.setFlightStart(slot, time);
+        system.bounce(this, collision);
     }
+
     /**
-     * Handles the case where the ball is overlapping with the frame.
+     * Returns the scheduler time at which the stored center is exact.
+     * @return the start of the current straight flight
      */
-    private void handleFailSafeOverlap() {
-        for (Collidable c : this.ge.getCollidables()) {
-            Rectangle r = c.getCollisionRectangle();
-            if (r.containsPoint(this.center)) {
-                resolveOverlapWith(r);
-            }
-        }
+    public double getFlightStart() {
+        return system.flightStart(slot);
     }
+
     /**
-     * Resolves the overlap between the ball and a rectangle.
-     * @param r the rectangle to resolve overlap with
+     * Returns where the ball is at a scheduler time, flying in a straight line.
+     * @param time the scheduler time, in ticks
+     * @return the center at that time
      */
-    private void resolveOverlapWith(Rectangle r) {
-        double ballX = this.center.getX();
-        double ballY = this.center.getY();
-        double left = r.getUpperLeft().getX();
-        double right = left + r.getWidth();
-        double top = r.getUpperLeft().getY();
-        double bottom = top + r.getHeight();
+    public Point positionAt(double time) {
+        double dt = time - system.flightStart(slot);
+        return new Point(system.x(slot) + system.dx(slot) * dt, system.y(slot) + system.dy(slot) * dt);
+    }
 
-        double dxLeft = Math.abs(ballX - left);
-        double dxRight = Math.abs(ballX - right);
-        double dyTop = Math.abs(ballY - top);
-        double dyBottom = Math.abs(ballY - bottom);
+    /**
+     * Moves the stored center to a scheduler time, so later positions are measured from there.
+     * @param time the scheduler time, in ticks
+     */
+    public void advanceTo(double time) {
+        double dt = time - system.flightStart(slot);
+        system.setCenter(slot, system.x(slot) + system.dx(slot) * dt, system.y(slot) + system.dy(slot) * dt);
+        system.setFlightStart(slot, time);
+    }
 
-        boolean isSideHit = Math.min(dxLeft, dxRight) < Math.min(dyTop, dyBottom);
+    /**
+     * Keeps the ball where it is now until a later scheduler time.
+     * @param time the scheduler time at which the ball starts moving again
+     */
+    public void holdUntil(double time) {
+        advanceTo(system.scheduler(slot).getTime());
+        system.setFlightStart(slot, time);
+    }
 
-        if (isSideHit) {
-            // Horizontal (side) correction
-            if (dxLeft < dxRight) {
-                this.center = new Point(left - this.radius, ballY);
-                this.v = new Velocity(-Math.abs(this.v.getDx()), this.v.getDy());
-            } else {
-                this.center = new Point(right + this.radius, ballY);
-                this.v = new Velocity(Math.abs(this.v.getDx()), this.v.getDy());
-            }
-        } else {
-            // Vertical (top/bottom) correction
-            if (dyTop < dyBottom) {
-                this.center = new Point(ballX, top - this.radius);
-                this.v = new Velocity(this.v.getDx(), -Math.abs(this.v.getDy()));
-            } else {
-                this.center = new Point(ballX, bottom + this.radius);
-                this.v = new Velocity(this.v.getDx(), Math.abs(this.v.getDy()));
-            }
+    /**
+     * Hands the ball's movement to an impact scheduler, or back to timePassed when null.
+     * @param s the scheduler, or null
+     */
+    public void setScheduler(ImpactScheduler s) {
+        ImpactScheduler current = system.scheduler(slot);
+        if (current != null) {
+            advanceTo(current.getTime());
         }
+        system.setScheduler(slot, s);
+        system.setFlightStart(slot, s == null ? 0 : s.getTime());
     }
+
     /**
      * @return the angle of the center point from origin (radians)
      */
     public double getAngle() {
-        return Math.atan2(this.center.getY(), this.center.getX());
+        Point c = getCenter();
+        return Math.atan2(c.getY(), c.getX());
     }
 
     /**
      * @return the center point of the ball
      */
     public Point getCenter() {
-        return this.center;
+        ImpactScheduler scheduler = system.scheduler(slot);
+        if (scheduler != null) {
+            return positionAt(scheduler.getTime());
+        }
+        return new Point(system.x(slot), system.y(slot));
     }
 
     /**
@@ -208,16 +249,16 @@ public class Ball implements Sprite {
      * @return a string representing the direction to change ("x", "y", "both", "none")
      */
     public String changeBallDirection(double p1, double p2, double p3) {
-        Ball temp = new Ball(this.center, this.radius, this.color);
-        temp.setVelocity(this.v);
+        Ball temp = new Ball(getCenter(), getSize(), getColor());
+        temp.setVelocity(getVelocity());
         temp.moveOneStep();
         Point tempCenter = temp.getCenter();
         boolean bY = false;
         boolean bX = false;
         Line dx = new Line(0, 0, 0, 0);
         Line dy = new Line(0, 0, 0, 0);
-        if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1)) <= this.radius)
-                || tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)) <= this.radius) {
+        if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1)) <= getSize())
+                || tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)) <= getSize()) {
             bY = true;
             if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1))
                     < tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)))) {
@@ -226,8 +267,8 @@ public class Ball implements Sprite {
                 dy = new Line(new Point(p1, p3), new Point(p2, p3));
             }
         }
-        if (tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3)) <= this.radius
-                || tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)) <= this.radius) {
+        if (tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3)) <= getSize()
+                || tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)) <= getSize()) {
             bX = true;
             if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3))
                     < tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)))) {
@@ -237,7 +278,7 @@ public class Ball implements Sprite {
             }
         }
         if (bY && bX) {
-            Point p = this.center;
+            Point p = getCenter();
             if (p.rangeX(dy) && !p.rangeY(dx)) {
                 return "y";
             } else if (p.rangeY(dx) && !p.rangeX(dy)) {
@@ -260,16 +301,16 @@ public class Ball implements Sprite {
      * @param p3 third point of frame
      */
     public void updateVelocity(double p1, double p2, double p3) {
-        Ball temp = new Ball(this.center, this.radius, this.color);
-        temp.setVelocity(this.v);
+        Ball temp = new Ball(getCenter(), getSize(), getColor());
+        temp.setVelocity(getVelocity());
         temp.moveOneStep();
         Point tempCenter = temp.getCenter();
         boolean bY = false;
         boolean bX = false;
         Line dx = new Line(0, 0, 0, 0);
         Line dy = new Line(0, 0, 0, 0);
-        if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1)) <= this.radius)
-                || tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)) <= this.radius) {
+        if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1)) <= getSize())
+                || tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)) <= getSize()) {
             bY = true;
             if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p2, p1))
                     < tempCenter.distanceToLine(new Point(p1, p3), new Point(p2, p3)))) {
@@ -278,8 +319,8 @@ public class Ball implements Sprite {
                 dy = new Line(new Point(p1, p3), new Point(p2, p3));
             }
         }
-        if (tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3)) <= this.radius
-                || tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)) <= this.radius) {
+        if (tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3)) <= getSize()
+                || tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)) <= getSize()) {
             bX = true;
             if ((tempCenter.distanceToLine(new Point(p1, p1), new Point(p1, p3))
                     < tempCenter.distanceToLine(new Point(p2, p1), new Point(p2, p3)))) {
@@ -289,7 +330,7 @@ public class Ball implements Sprite {
             }
         }
         if (bY && bX) {
-            Point p = this.center;
+            Point p = getCenter();
             if (p.rangeX(dy) && !p.rangeY(dx)) {
                 bX = false;
             } else if (p.rangeY(dx) && !p.rangeX(dy)) {
@@ -297,29 +338,21 @@ public class Ball implements Sprite {
             }
         }
         if (bY) {
-            this.setVelocity(this.v.getDx(), -this.v.getDy());
+            this.setVelocity(system.dx(slot), -system.dy(slot));
         }
         if (bX) {
-            this.setVelocity(-this.v.getDx(), this.v.getDy());
+            this.setVelocity(-system.dx(slot), system.dy(slot));
         }
     }
 
-    /**
-     * Calculates the trajectory of the ball.
-     * @return the line representing the trajectory
-     */
-    private Line calculateTrajectory() {
-        Point start = new Point(this.center.getX(), this.center.getY());
-        Point end = new Point(this.center.getX() + 2 * this.v.getDx(),
-                this.center.getY() + 2 * this.v.getDy());
-        return new Line(start, end);
-    }
-
     /**
      * Notifies the ball that time has passed.
+     * A ball moved by an impact scheduler does nothing here; the scheduler moves it.
      */
     public void timePassed() {
-        this.moveOneStep();
+        if (system.scheduler(slot) == null) {
+            this.moveOneStep();
+        }
     }
 
     /**
@@ -330,19 +363,28 @@ public class Ball implements Sprite {
         if (ge == null) {
             throw new IllegalArgumentException("GameEnvironment cannot be null");
         }
-        this.ge = ge;
+        if (system.getGameEnvironment() != ge) {
+            if (system.size() > 1) {
+                BallSystem own = new BallSystem(1);
+                own.adopt(this);
+            }
+            system.setGameEnvironment(ge);
+        }
     }
 
     /**
      * Adds the ball to the game.
+     * The ball joins the game's ball system, which moves and draws all the balls together.
      * @param g the game instance
      */
     public void addToGame(Game g) {
         if (g == null) {
             throw new IllegalArgumentException("Game cannot be null");
         }
-        g.addSprite(this);
-        setGameEnvironment(g.getEnvironment());
+        g.getBallSystem().adopt(this);
+        if (g.getScheduler() != null) {
+            g.getScheduler().addBall(this);
+        }
     }
 
     /**
@@ -350,7 +392,7 @@ public class Ball implements Sprite {
      * @return the color of the ball
      */
     public java.awt.Color getColorBall() {
-        return color;
+        return getColor();
     }
 
     /**
@@ -358,7 +400,7 @@ public class Ball implements Sprite {
      * @param color the color to set
      */
     public void setColor(java.awt.Color color) {
-        this.color = color;
+        system.setColor(slot, color);
     }
 
     /**
@@ -369,6 +411,14 @@ public class Ball implements Sprite {
         if (g == null) {
             throw new IllegalArgumentException("Game cannot be null");
         }
-        g.removeSprite(this);
+        ImpactScheduler scheduler = system.scheduler(slot);
+        if (scheduler != null) {
+            scheduler.removeBall(this);
+        }
+        if (system == g.getBallSystem()) {
+            system.remove(this);
+        } else {
+            g.removeSprite(this);
+        }
     }
 }
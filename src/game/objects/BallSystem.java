@@ -0,0 +1,922 @@
+package game.objects;
+
+import Geomtry.Point;
+import Geomtry.Ray;
+import biuoop.DrawSurface;
+import game.Game;
+import game.GameEnvironment;
+import game.ImpactScheduler;
+import game.collision.CollisionCache;
+import game.collision.CollisionInfo;
+import game.collision.RayHit;
+import game.collision.Sprite;
+import game.display.DirtyRegion;
+import game.metrics.HitEvent;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A BallSystem keeps many balls in parallel arrays instead of one object per ball.
+ * Positions, velocities, radii and colors live in primitive arrays, so stepping and
+ * drawing walk contiguous memory and a step allocates nothing unless a ball hits something.
+ * Each ball still has a Ball handle, which is what listeners and collidables see.
+ * Removing a ball moves the last ball into its slot; removals made while the system is
+ * stepping wait until the step is over.
+ */
+public class BallSystem implements Sprite {
+    /**
+     * How far from a surface a ball is left after touching it, so the next step starts outside.
+     */
+    private static final double CONTACT_SKIN = 0.01;
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * How many balls one parallel task moves.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private int size;
+    private double[] x;
+    private double[] y;
+    private double[] previousX;
+    private double[] previousY;
+    private double[] dx;
+    private double[] dy;
+    private int[] radius;
+    private int[] color;
+    private double[] flightStart;
+    private boolean[] dying;
+    private Ball[] handles;
+    private CollisionCache[] caches;
+    private ImpactScheduler[] schedulers;
+
+    private List<Color> palette = new ArrayList<>();
+    private Map<Color, Integer> paletteIndex = new IdentityHashMap<>();
+    private GameEnvironment ge;
+    private int stepping;
+    private List<Ball> pendingRemovals = new ArrayList<>();
+    private Chunk serial = new Chunk(false);
+    private ForkJoinPool pool;
+    private Chunk[] chunks = new Chunk[0];
+    private List<HitRecord> parallelHits = new ArrayList<>();
+    private boolean[] resumed = new boolean[0];
+
+    /**
+     * Constructs an empty ball system.
+     */
+    public BallSystem() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty ball system with room for a number of balls.
+     * @param capacity the number of balls to make room for
+     */
+    public BallSystem(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Sets the game environment the balls collide with.
+     * @param ge the game environment
+     */
+    public void setGameEnvironment(GameEnvironment ge) {
+        if (ge == null) {
+            throw new IllegalArgumentException("GameEnvironment cannot be null");
+        }
+        this.ge = ge;
+    }
+
+    /**
+     * Gets the game environment the balls collide with.
+     * @return the game environment, or null if none was set
+     */
+    public GameEnvironment getGameEnvironment() {
+        return ge;
+    }
+
+    /**
+     * Returns the number of balls in the system.
+     * @return the number of balls
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the handle of the ball in a slot.
+     * @param slot the slot, from 0 to size - 1
+     * @return the ball
+     */
+    public Ball get(int slot) {
+        return handles[slot];
+    }
+
+    /**
+     * Adds a new ball to the system.
+     * @param cx the x-coordinate of the center
+     * @param cy the y-coordinate of the center
+     * @param r the radius
+     * @param c the color
+     * @return the handle of the new ball
+     */
+    public Ball add(double cx, double cy, int r, Color c) {
+        Ball b = new Ball(this, size);
+        append(b, cx, cy, r, c);
+        return b;
+    }
+
+    /**
+     * Puts a ball that has no state yet in a new slot.
+     * @param b the ball
+     * @param cx the x-coordinate of the center
+     * @param cy the y-coordinate of the center
+     * @param r the radius
+     * @param c the color
+     */
+    void place(Ball b, double cx, double cy, int r, Color c) {
+        append(b, cx, cy, r, c);
+        b.attach(this, size - 1);
+    }
+
+    /**
+     * Moves a ball into this system from the system it is in now.
+     * The ball keeps its position, velocity, color, cache and scheduler.
+     * @param b the ball
+     */
+    public void adopt(Ball b) {
+        BallSystem from = b.system();
+        if (from == this) {
+            return;
+        }
+        int i = b.slot();
+        append(b, from.x[i], from.y[i], from.radius[i], from.palette.get(from.color[i]));
+        int j = size - 1;
+        previousX[j] = from.previousX[i];
+        previousY[j] = from.previousY[i];
+        dx[j] = from.dx[i];
+        dy[j] = from.dy[i];
+        flightStart[j] = from.flightStart[i];
+        caches[j] = from.caches[i];
+        schedulers[j] = from.schedulers[i];
+        from.release(i);
+        b.attach(this, j);
+    }
+
+    /**
+     * Removes a ball from the system. The ball moves to a system of its own, keeping its state.
+     * While the system is stepping the removal waits until the step is over.
+     * @param b the ball
+     */
+    public void remove(Ball b) {
+        if (b.system() != this) {
+            return;
+        }
+        if (stepping > 0) {
+            if (!dying[b.slot()]) {
+                dying[b.slot()] = true;
+                pendingRemovals.add(b);
+            }
+            return;
+        }
+        BallSystem own = new BallSystem(1);
+        own.ge = this.ge;
+        own.adopt(b);
+    }
+
+    /**
+     * Moves every ball one step, unless an impact scheduler moves it.
+     * Where the balls were before the step is kept, to draw them between the two positions.
+     * With a fork-join pool set, the balls move in parallel and their hits are applied afterwards, in order.
+     */
+    public void timePassed() {
+        if (ge == null) {
+            return;
+        }
+        System.arraycopy(x, 0, previousX, 0, size);
+        System.arraycopy(y, 0, previousY, 0, size);
+        if (pool != null) {
+            parallelStep();
+            return;
+        }
+        stepping++;
+        serial.reset();
+        int maxSubSteps = ge.getMaxSubSteps();
+        for (int i = 0; i < size; i++) {
+            if (!dying[i] && schedulers[i] == null) {
+                move(i, maxSubSteps, serial);
+            }
+        }
+        stepping--;
+        serial.report(ge);
+        flushRemovals();
+    }
+
+    /**
+     * Moves one ball one step.
+     * @param slot the ball's slot
+     */
+    void moveOne(int slot) {
+        stepping++;
+        serial.reset();
+        move(slot, ge.getMaxSubSteps(), serial);
+        stepping--;
+        serial.report(ge);
+        flushRemovals();
+    }
+
+    /**
+     * Sets the fork-join pool the balls are moved on, or null to move them one after another.
+     * In a parallel step the balls only read the environment. Every hit is recorded with the time
+     * in the tick it happened and the ball's slot, and once all balls have moved the hits are passed to
+     * the collidables sorted by that time and slot. So listeners see the same hits in the same order
+     * whatever the number of threads. Within a tick the balls all see the collidables as they were
+     * at its start, so a ball may hit a collidable that an earlier hit removed. Such a hit is dropped
+     * with the ball's later hits, and the ball moves the rest of the tick again from where it hit,
+     * against the collidables as they are then, so no collidable is hit after it was removed.
+     * @param pool the pool, or null
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the fork-join pool the balls are moved on.
+     * @return the pool, or null when balls move one after another
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Moves all balls in parallel, then applies their hits in order.
+     */
+    private void parallelStep() {
+        stepping++;
+        int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks.length < chunkCount) {
+            chunks = Arrays.copyOf(chunks, chunkCount);
+        }
+        for (int c = 0; c < chunkCount; c++) {
+            if (chunks[c] == null) {
+                chunks[c] = new Chunk(true);
+            }
+            chunks[c].reset();
+        }
+        pool.invoke(new StepTask(0, chunkCount, ge.getMaxSubSteps()));
+
+        List<HitRecord> hits = parallelHits;
+        hits.clear();
+        for (int c = 0; c < chunkCount; c++) {
+            chunks[c].report(ge);
+            // Added one by one, since addAll copies the chunk's list into a new array first.
+            List<HitRecord> chunkHits = chunks[c].hits;
+            for (int k = 0; k < chunkHits.size(); k++) {
+                hits.add(chunkHits.get(k));
+            }
+        }
+        Collections.sort(hits);
+        commit(hits);
+        hits.clear();
+        stepping--;
+        flushRemovals();
+    }
+
+    /**
+     * Passes sorted hits to their collidables. A hit on a collidable that an earlier hit removed is
+     * dropped, and so are the ball's later hits; the ball is put back where it was before that
+     * sub-step and moves the rest of the tick again, one hit at a time.
+     * @param hits the hits, sorted
+     */
+    private void commit(List<HitRecord> hits) {
+        boolean anyResumed = false;
+        for (int k = 0; k < hits.size(); k++) {
+            HitRecord r = hits.get(k);
+            if (anyResumed && resumed[r.slot]) {
+                continue;
+            }
+            if (ge.contains(r.collision.collisionObject())) {
+                hit(handles[r.slot], r.collision, r.before);
+                continue;
+            }
+            if (!anyResumed) {
+                if (resumed.length < size) {
+                    resumed = new boolean[x.length];
+                }
+                anyResumed = true;
+            }
+            resumed[r.slot] = true;
+            x[r.slot] = r.startX;
+            y[r.slot] = r.startY;
+            dx[r.slot] = r.before.getDx();
+            dy[r.slot] = r.before.getDy();
+            serial.reset();
+            moveFrom(r.slot, r.order, r.remaining, ge.getMaxSubSteps(), serial);
+            serial.report(ge);
+        }
+        if (anyResumed) {
+            Arrays.fill(resumed, 0, size, false);
+        }
+    }
+
+    /**
+     * Moves a ball one step, bouncing at each surface it touches and carrying on with the rest of the step.
+     * A chunk that records hits gets them instead of the collidables, and the velocity comes from bounce.
+     * @param i the ball's slot
+     * @param maxSubSteps the most collisions to resolve
+     * @param chunk the counters, scratch objects and hit records to use
+     */
+    private void move(int i, int maxSubSteps, Chunk chunk) {
+        chunk.moves++;
+        if (dx[i] == 0 && dy[i] == 0) {
+            return;
+        }
+        moveFrom(i, 0, 1, maxSubSteps, chunk);
+    }
+
+    /**
+     * Moves a ball for what is left of a step, starting at one of its sub-steps.
+     * @param i the ball's slot
+     * @param first the sub-step to start at
+     * @param remaining the part of the step left to move
+     * @param maxSubSteps the most collisions to resolve in the whole step
+     * @param chunk the counters, scratch objects and hit records to use
+     */
+    private void moveFrom(int i, int first, double remaining, int maxSubSteps, Chunk chunk) {
+        CollisionCache cache = cache(i);
+        Ray ray = chunk.ray;
+        RayHit hit = chunk.hit;
+        for (int s = first; s < maxSubSteps; s++) {
+            chunk.subSteps++;
+            double ex = x[i] + dx[i] * remaining;
+            double ey = y[i] + dy[i] * remaining;
+            ray.set(x[i], y[i], ex, ey);
+            boolean found = ge.raycast(ray, radius[i], cache, hit);
+            if (cache.isLastQueryCached()) {
+                chunk.cacheHits++;
+            }
+            if (!found) {
+                x[i] = ex;
+                y[i] = ey;
+                return;
+            }
+            chunk.collisions++;
+            double t = hit.getT();
+            CollisionInfo collision = new CollisionInfo(new Point(hit.getContactX(), hit.getContactY()),
+                    hit.getCollidable(), hit.getNormalX(), hit.getNormalY(), t);
+            if (chunk.hits == null) {
+                bounce(handles[i], collision);
+            } else {
+                Velocity before = new Velocity(dx[i], dy[i]);
+                chunk.hits.add(new HitRecord(1 - remaining + remaining * t, i, s, collision, before,
+                        x[i], y[i], remaining));
+                placeAgainst(i, collision);
+                Velocity after = collision.collisionObject().bounce(collision, before);
+                dx[i] = after.getDx();
+                dy[i] = after.getDy();
+            }
+            remaining *= 1 - t;
+            if (remaining <= 0) {
+                return;
+            }
+        }
+        chunk.capHits++;
+    }
+
+    /**
+     * Places a ball against the surface it hit, just outside of it.
+     * @param i the ball's slot
+     * @param collision the collision information
+     */
+    private void placeAgainst(int i, CollisionInfo collision) {
+        double distance = radius[i] + CONTACT_SKIN;
+        Point contact = collision.collisionPoint();
+        x[i] = contact.getX() + collision.normalX() * distance;
+        y[i] = contact.getY() + collision.normalY() * distance;
+    }
+
+    /**
+     * Places a ball against the surface it hit and lets the collidable change its velocity.
+     * The ball is found through its handle again after the hit, since a listener may have removed it.
+     * @param b the ball
+     * @param collision the collision information
+     */
+    void bounce(Ball b, CollisionInfo collision) {
+        int i = b.slot();
+        placeAgainst(i, collision);
+        Velocity after = hit(b, collision, new Velocity(dx[i], dy[i]));
+        BallSystem now = b.system();
+        now.dx[b.slot()] = after.getDx();
+        now.dy[b.slot()] = after.getDy();
+    }
+
+    /**
+     * Passes a ball's hit to the collidable it hit, inside a Flight Recorder hit event.
+     * @param b the ball
+     * @param collision the collision information
+     * @param velocity the ball's velocity before the hit
+     * @return the velocity the collidable gives the ball
+     */
+    private static Velocity hit(Ball b, CollisionInfo collision, Velocity velocity) {
+        HitEvent event = new HitEvent();
+        event.begin();
+        Velocity after = collision.collisionObject().hit(b, collision, velocity);
+        event.end();
+        if (event.shouldCommit()) {
+            Point contact = collision.collisionPoint();
+            event.set(collision.collisionObject().getClass(), contact.getX(), contact.getY());
+            event.commit();
+        }
+        return after;
+    }
+
+    /**
+     * Draws every ball where it is now.
+     * @param d the surface to draw on
+     */
+    public void drawOn(DrawSurface d) {
+        drawOn(d, 1);
+    }
+
+    /**
+     * Draws every ball between where it was before the last step and where it is now,
+     * changing the color only between balls of different colors.
+     * @param d the surface to draw on
+     * @param alpha how far the frame is past the previous tick, from 0 to 1
+     */
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        int current = -1;
+        for (int i = 0; i < size; i++) {
+            if (dying[i]) {
+                continue;
+            }
+            if (color[i] != current) {
+                current = color[i];
+                d.setColor(palette.get(current));
+            }
+            d.fillCircle((int) drawnX(i, alpha), (int) drawnY(i, alpha), radius[i]);
+        }
+    }
+
+    /**
+     * Balls are only filled, and which of two touching balls is drawn on top does not matter,
+     * so they may be drawn grouped by color.
+     * @return true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * Reports the square around each ball as it is drawn now.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return true
+     */
+    @Override
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        for (int i = 0; i < size; i++) {
+            if (!dying[i]) {
+                int r = radius[i] + 1;
+                damage.add((int) drawnX(i, alpha) - r, (int) drawnY(i, alpha) - r, 2 * r, 2 * r);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the x-coordinate a ball is drawn at.
+     * Balls moved by an impact scheduler are drawn where their flight puts them at that time,
+     * but never before their last impact; the others between their last two positions.
+     * @param i the slot
+     * @param alpha how far the frame is past the previous tick
+     * @return the x-coordinate of the drawn center
+     */
+    private double drawnX(int i, double alpha) {
+        if (schedulers[i] != null) {
+            return x[i] + dx[i] * Math.max(0, schedulers[i].getTime() - 1 + alpha - flightStart[i]);
+        }
+        return previousX[i] + (x[i] - previousX[i]) * alpha;
+    }
+
+    /**
+     * Returns the y-coordinate a ball is drawn at.
+     * @param i the slot
+     * @param alpha how far the frame is past the previous tick
+     * @return the y-coordinate of the drawn center
+     */
+    private double drawnY(int i, double alpha) {
+        if (schedulers[i] != null) {
+            return y[i] + dy[i] * Math.max(0, schedulers[i].getTime() - 1 + alpha - flightStart[i]);
+        }
+        return previousY[i] + (y[i] - previousY[i]) * alpha;
+    }
+
+    /**
+     * Adds the system to the game as a sprite. The balls in it are not counted.
+     * @param g the game
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+        setGameEnvironment(g.getEnvironment());
+    }
+
+    /**
+     * Returns the x-coordinate of a ball's stored center.
+     * @param i the slot
+     * @return the x-coordinate
+     */
+    double x(int i) {
+        return x[i];
+    }
+
+    /**
+     * Returns the y-coordinate of a ball's stored center.
+     * @param i the slot
+     * @return the y-coordinate
+     */
+    double y(int i) {
+        return y[i];
+    }
+
+    /**
+     * Returns the horizontal speed of a ball.
+     * @param i the slot
+     * @return dx
+     */
+    double dx(int i) {
+        return dx[i];
+    }
+
+    /**
+     * Returns the vertical speed of a ball.
+     * @param i the slot
+     * @return dy
+     */
+    double dy(int i) {
+        return dy[i];
+    }
+
+    /**
+     * Returns the radius of a ball.
+     * @param i the slot
+     * @return the radius
+     */
+    int radius(int i) {
+        return radius[i];
+    }
+
+    /**
+     * Returns the color of a ball.
+     * @param i the slot
+     * @return the color
+     */
+    Color color(int i) {
+        return palette.get(color[i]);
+    }
+
+    /**
+     * Returns the time a ball's stored center is exact at, for balls moved by a scheduler.
+     * @param i the slot
+     * @return the flight start
+     */
+    double flightStart(int i) {
+        return flightStart[i];
+    }
+
+    /**
+     * Returns the scheduler that moves a ball.
+     * @param i the slot
+     * @return the scheduler, or null
+     */
+    ImpactScheduler scheduler(int i) {
+        return schedulers[i];
+    }
+
+    /**
+     * Returns a ball's collision cache, making it on first use.
+     * @param i the slot
+     * @return the cache
+     */
+    CollisionCache cache(int i) {
+        if (caches[i] == null) {
+            caches[i] = new CollisionCache();
+        }
+        return caches[i];
+    }
+
+    /**
+     * Sets the stored center of a ball.
+     * @param i the slot
+     * @param cx the x-coordinate
+     * @param cy the y-coordinate
+     */
+    void setCenter(int i, double cx, double cy) {
+        x[i] = cx;
+        y[i] = cy;
+        previousX[i] = cx;
+        previousY[i] = cy;
+    }
+
+    /**
+     * Sets the velocity of a ball.
+     * @param i the slot
+     * @param vx dx
+     * @param vy dy
+     */
+    void setVelocity(int i, double vx, double vy) {
+        dx[i] = vx;
+        dy[i] = vy;
+    }
+
+    /**
+     * Sets the color of a ball.
+     * @param i the slot
+     * @param c the color
+     */
+    void setColor(int i, Color c) {
+        color[i] = colorIndex(c);
+    }
+
+    /**
+     * Sets the flight start of a ball.
+     * @param i the slot
+     * @param time the scheduler time its stored center is exact at
+     */
+    void setFlightStart(int i, double time) {
+        flightStart[i] = time;
+    }
+
+    /**
+     * Sets the scheduler that moves a ball.
+     * @param i the slot
+     * @param s the scheduler, or null
+     */
+    void setScheduler(int i, ImpactScheduler s) {
+        schedulers[i] = s;
+    }
+
+    /**
+     * Appends a ball's state in a new slot.
+     * @param b the ball's handle
+     * @param cx the x-coordinate of the center
+     * @param cy the y-coordinate of the center
+     * @param r the radius
+     * @param c the color
+     */
+    private void append(Ball b, double cx, double cy, int r, Color c) {
+        if (size == x.length) {
+            allocate(size * 2);
+        }
+        int i = size++;
+        x[i] = cx;
+        y[i] = cy;
+        previousX[i] = cx;
+        previousY[i] = cy;
+        dx[i] = 0;
+        dy[i] = 0;
+        radius[i] = r;
+        color[i] = colorIndex(c);
+        flightStart[i] = 0;
+        dying[i] = false;
+        handles[i] = b;
+        caches[i] = null;
+        schedulers[i] = null;
+    }
+
+    /**
+     * Frees a slot by moving the last ball into it.
+     * @param i the slot
+     */
+    private void release(int i) {
+        int last = --size;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            previousX[i] = previousX[last];
+            previousY[i] = previousY[last];
+            dx[i] = dx[last];
+            dy[i] = dy[last];
+            radius[i] = radius[last];
+            color[i] = color[last];
+            flightStart[i] = flightStart[last];
+            dying[i] = dying[last];
+            handles[i] = handles[last];
+            caches[i] = caches[last];
+            schedulers[i] = schedulers[last];
+            handles[i].attach(this, i);
+        }
+        handles[last] = null;
+        caches[last] = null;
+        schedulers[last] = null;
+    }
+
+    /**
+     * Carries out the removals made while stepping.
+     */
+    private void flushRemovals() {
+        if (stepping > 0 || pendingRemovals.isEmpty()) {
+            return;
+        }
+        for (Ball b : pendingRemovals) {
+            if (b.system() == this) {
+                dying[b.slot()] = false;
+                remove(b);
+            }
+        }
+        pendingRemovals.clear();
+    }
+
+    /**
+     * Returns the palette index of a color, adding it if it is new.
+     * Colors are kept by identity in the palette, so a ball hands back the same Color object it was given.
+     * @param c the color
+     * @return the index
+     */
+    private int colorIndex(Color c) {
+        Integer index = paletteIndex.get(c);
+        if (index == null) {
+            index = palette.size();
+            palette.add(c);
+            paletteIndex.put(c, index);
+        }
+        return index;
+    }
+
+    /**
+     * Grows the arrays.
+     * @param capacity the new capacity
+     */
+    private void allocate(int capacity) {
+        if (x == null) {
+            x = new double[capacity];
+            y = new double[capacity];
+            previousX = new double[capacity];
+            previousY = new double[capacity];
+            dx = new double[capacity];
+            dy = new double[capacity];
+            radius = new int[capacity];
+            color = new int[capacity];
+            flightStart = new double[capacity];
+            dying = new boolean[capacity];
+            handles = new Ball[capacity];
+            caches = new CollisionCache[capacity];
+            schedulers = new ImpactScheduler[capacity];
+            return;
+        }
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        dx = Arrays.copyOf(dx, capacity);
+        dy = Arrays.copyOf(dy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        color = Arrays.copyOf(color, capacity);
+        flightStart = Arrays.copyOf(flightStart, capacity);
+        dying = Arrays.copyOf(dying, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        caches = Arrays.copyOf(caches, capacity);
+        schedulers = Arrays.copyOf(schedulers, capacity);
+    }
+
+    /**
+     * The counters, scratch objects and recorded hits of one run of balls.
+     * Each parallel task has its own, so moving balls shares nothing between threads.
+     */
+    private static final class Chunk {
+        private final Ray ray = new Ray();
+        private final RayHit hit = new RayHit();
+        private final List<HitRecord> hits;
+        private long moves;
+        private long subSteps;
+        private long collisions;
+        private long capHits;
+        private long cacheHits;
+
+        /**
+         * Constructs a chunk.
+         * @param recordHits true to record hits for a later commit instead of calling hit
+         */
+        private Chunk(boolean recordHits) {
+            this.hits = recordHits ? new ArrayList<>() : null;
+        }
+
+        /**
+         * Clears the counters and the recorded hits.
+         */
+        private void reset() {
+            moves = 0;
+            subSteps = 0;
+            collisions = 0;
+            capHits = 0;
+            cacheHits = 0;
+            if (hits != null) {
+                hits.clear();
+            }
+        }
+
+        /**
+         * Adds the counters to an environment's stats.
+         * @param ge the environment
+         */
+        private void report(GameEnvironment ge) {
+            ge.getStats().recordBatch(moves, subSteps, collisions, capHits, cacheHits, subSteps - cacheHits);
+        }
+    }
+
+    /**
+     * A hit found in a parallel step, waiting to be passed to its collidable.
+     * Hits sort by the time in the tick they happened, then by ball slot, then by their order for the ball.
+     * It also keeps where the sub-step that found it started, so the ball can move it again.
+     */
+    private static final class HitRecord implements Comparable<HitRecord> {
+        private final double time;
+        private final int slot;
+        private final int order;
+        private final CollisionInfo collision;
+        private final Velocity before;
+        private final double startX;
+        private final double startY;
+        private final double remaining;
+
+        /**
+         * Constructs a hit record.
+         * @param time the time in the tick, from 0 to 1
+         * @param slot the ball's slot
+         * @param order the number of hits the ball had before this one in the tick
+         * @param collision the collision
+         * @param before the ball's velocity before the hit
+         * @param startX the x-coordinate of the ball's center when the sub-step started
+         * @param startY the y-coordinate of the ball's center when the sub-step started
+         * @param remaining the part of the tick that was left to move when the sub-step started
+         */
+        private HitRecord(double time, int slot, int order, CollisionInfo collision, Velocity before,
+                          double startX, double startY, double remaining) {
+            this.time = time;
+            this.slot = slot;
+            this.order = order;
+            this.collision = collision;
+            this.before = before;
+            this.startX = startX;
+            this.startY = startY;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int compareTo(HitRecord other) {
+            int byTime = Double.compare(time, other.time);
+            if (byTime != 0) {
+                return byTime;
+            }
+            int bySlot = Integer.compare(slot, other.slot);
+            return bySlot != 0 ? bySlot : Integer.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Moves a range of chunks, splitting it in half until one chunk is left.
+     */
+    private final class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int maxSubSteps;
+
+        /**
+         * Constructs a task for a range of chunks.
+         * @param from the first chunk
+         * @param to one past the last chunk
+         * @param maxSubSteps the most collisions a ball may resolve
+         */
+        private StepTask(int from, int to, int maxSubSteps) {
+            this.from = from;
+            this.to = to;
+            this.maxSubSteps = maxSubSteps;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StepTask(from, mid, maxSubSteps), new StepTask(mid, to, maxSubSteps));
+                return;
+            }
+            Chunk chunk = chunks[from];
+            int end = Math.min(size, (from + 1) * CHUNK_SIZE);
+            for (int i = from * CHUNK_SIZE; i < end; i++) {
+                if (!dying[i] && schedulers[i] == null) {
+                    move(i, maxSubSteps, chunk);
+                }
+            }
+        }
+    }
+}
@@ -1,24 +1,26 @@
 package game.objects;
 
 import biuoop.DrawSurface;
-import Geomtry.Point;
 import Geomtry.Rectangle;
 import game.Game;
 import game.collision.Collidable;
-import game.collision.Sprite;
+import game.collision.CollisionInfo;
+import game.collision.StaticSprite;
 import game.listeners.HitListener;
 import game.listeners.HitNotifier;
+import game.metrics.FrameProfiler;
+import game.metrics.HitDispatchEvent;
 
 import java.util.List;
 import java.util.ArrayList;
 /**
  * Represents a block that can be collided with and drawn.
  */
-public class Block implements Collidable, Sprite, HitNotifier {
+public class Block implements Collidable, StaticSprite, HitNotifier {
     private Rectangle rect;
     private java.awt.Color color;
-    private Rectangle collisionRectangle;
     private List<HitListener> hitListeners;
+    private FrameProfiler profiler;
     /**
      * Constructs a block with a given rectangle and color.
      * @param rect the rectangle shape of the block
@@ -27,8 +29,6 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Block(Rectangle rect, java.awt.Color color) {
         this.rect = rect;
         this.color = color;
-        this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5, rect.getUpperLeft().getY() - 5,
-                rect.getWidth() + 10, rect.getHeight() + 10);
         this.hitListeners = new ArrayList<>();
     }
 
@@ -37,38 +37,30 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @return the collision rectangle
      */
     public Rectangle getCollisionRectangle() {
-        return collisionRectangle;
+        return rect;
     }
 
     /**
      * Handles the collision with a ball and updates its velocity.
+     * The velocity is reflected about the surface normal of the hit.
      * @param hitter the ball that hit the block
-     * @param collisionPoint the point of collision
+     * @param collision the collision details
      * @param currentVelocity the current velocity before collision
      * @return the updated velocity after the collision
      */
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-
-        double blockTop = collisionRectangle.getUpperLeft().getY();
-        double blockBottom = collisionRectangle.getUpperLeft().getY() + collisionRectangle.getHeight();
-        double blockLeft = collisionRectangle.getUpperLeft().getX();
-        double blockRight = collisionRectangle.getUpperLeft().getX() + collisionRectangle.getWidth();
-
+    public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
         if (!ballColorMatch(hitter)) {
             this.notifyHit(hitter);
         }
+        return bounce(collision, currentVelocity);
+    }
 
-        if (collisionPoint.getY() == blockTop) {
-            return new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
-        } else if (collisionPoint.getY() == blockBottom) {
-            return new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
-        } else if (collisionPoint.getX() == blockLeft) {
-            return new Velocity(-currentVelocity.getDx(), currentVelocity.getDy());
-        } else if (collisionPoint.getX() == blockRight) {
-            return new Velocity(-currentVelocity.getDx(), currentVelocity.getDy());
-        }
-
-        return currentVelocity;
+    /**
+     * Gets the area the block draws in. The outline reaches one pixel past the right and bottom edges.
+     * @return the drawn bounds
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(rect.getUpperLeft(), rect.getWidth() + 1, rect.getHeight() + 1);
     }
 
     /**
@@ -102,6 +94,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public void addToGame(Game g) {
         g.addCollidable(this);
         g.addSprite(this);
+        profiler = g.getEnvironment().getProfiler();
     }
 
     /**
@@ -143,9 +136,21 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param hitter the ball that hit the block
      */
     private void notifyHit(Ball hitter) {
+        boolean timed = profiler != null && profiler.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
         List<HitListener> listeners = new ArrayList<>(this.hitListeners);
         for (HitListener hl : listeners) {
+            HitDispatchEvent event = new HitDispatchEvent();
+            event.begin();
             hl.hitEvent(this, hitter);
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(hl.getClass());
+                event.commit();
+            }
+        }
+        if (timed) {
+            profiler.addListenerNanos(System.nanoTime() - start);
         }
     }
 
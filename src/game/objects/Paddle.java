@@ -1,7 +1,9 @@
 package game.objects;
 
 import game.collision.Collidable;
+import game.collision.CollisionInfo;
 import game.collision.Sprite;
+import game.display.DirtyRegion;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 
@@ -18,8 +20,8 @@ import game.Game;
 public class Paddle implements Sprite, Collidable {
     private KeyboardSensor keyboard;
     private Rectangle rect;
+    private double previousX;
     private GameEnvironment ge;
-    private Rectangle collisionRectangle;
 
     /**
      * Constructs a new Paddle.
@@ -29,14 +31,14 @@ public class Paddle implements Sprite, Collidable {
     public Paddle(KeyboardSensor k, Rectangle rect) {
         this.rect = new Rectangle(rect.getUpperLeft(), rect.getWidth(), rect.getHeight());
         keyboard = k;
-        this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5,
-                rect.getUpperLeft().getY() - 5, rect.getWidth() + 10, rect.getHeight() + 10);
+        previousX = rect.getUpperLeft().getX();
     }
 
     /**
      * Updates paddle position based on key input.
      */
     public void timePassed() {
+        previousX = this.rect.getUpperLeft().getX();
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
             moveLeft();
         }
@@ -49,36 +51,34 @@ public class Paddle implements Sprite, Collidable {
      * Moves the paddle left.
      */
     public void moveLeft() {
-        if (this.rect.getUpperLeft().getX() < -rect.getWidth() + 20) {
-            this.rect = new Rectangle(
-                    new Point(800, rect.getUpperLeft().getY()),
-                    this.rect.getWidth(), this.rect.getHeight());
-            this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5,
-                    rect.getUpperLeft().getY() - 5, rect.getWidth() + 10, rect.getHeight() + 10);
+        double x = this.rect.getUpperLeft().getX();
+        if (x < -rect.getWidth() + 20) {
+            x = 800;
         }
-        this.rect = new Rectangle(
-                new Point(this.rect.getUpperLeft().getX() - 3, this.rect.getUpperLeft().getY()),
-                this.rect.getWidth(), this.rect.getHeight());
-        this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5,
-                rect.getUpperLeft().getY() - 5, rect.getWidth() + 10, rect.getHeight() + 10);
+        moveTo(x - 3);
     }
 
     /**
      * Moves the paddle right.
      */
     public void moveRight() {
-        if (this.rect.getUpperLeft().getX() > 780) {
-            this.rect = new Rectangle(
-                    new Point(-rect.getWidth() + 20, rect.getUpperLeft().getY()),
-                    this.rect.getWidth(), this.rect.getHeight());
-            this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5,
-                    rect.getUpperLeft().getY() - 5, rect.getWidth() + 10, rect.getHeight() + 10);
+        double x = this.rect.getUpperLeft().getX();
+        if (x > 780) {
+            x = -rect.getWidth() + 20;
         }
-        this.rect = new Rectangle(
-                new Point(this.rect.getUpperLeft().getX() + 3, this.rect.getUpperLeft().getY()),
+        moveTo(x + 3);
+    }
+
+    /**
+     * Moves the paddle to a new x-coordinate and tells the environment about it.
+     * @param x the new x-coordinate of the paddle's left edge
+     */
+    private void moveTo(double x) {
+        this.rect = new Rectangle(new Point(x, this.rect.getUpperLeft().getY()),
                 this.rect.getWidth(), this.rect.getHeight());
-        this.collisionRectangle = new Rectangle(rect.getUpperLeft().getX() - 5,
-                rect.getUpperLeft().getY() - 5, rect.getWidth() + 10, rect.getHeight() + 10);
+        if (this.ge != null) {
+            this.ge.updateCollidable(this);
+        }
     }
 
     /**
@@ -86,13 +86,60 @@ public class Paddle implements Sprite, Collidable {
      * @param d the DrawSurface to draw on
      */
     public void drawOn(DrawSurface d) {
+        draw(d, this.rect.getUpperLeft().getX());
+    }
+
+    /**
+     * Draws the paddle between where it was before the last tick and where it is now.
+     * When the paddle wrapped around the screen in the last tick it is drawn where it is now.
+     * @param d the DrawSurface to draw on
+     * @param alpha how far the frame is past the previous tick, from 0 to 1
+     */
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        draw(d, drawnX(alpha));
+    }
+
+    /**
+     * Reports the paddle's rectangle as it is drawn now, with its outline.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return true
+     */
+    @Override
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        damage.add((int) drawnX(alpha), (int) this.rect.getUpperLeft().getY(),
+                (int) this.rect.getWidth() + 1, (int) this.rect.getHeight() + 1);
+        return true;
+    }
+
+    /**
+     * Returns the x-coordinate the paddle's left edge is drawn at, between where it was before the
+     * last tick and where it is now. When it wrapped around the screen, where it is now.
+     * @param alpha how far the frame is past the previous tick
+     * @return the drawn x-coordinate
+     */
+    private double drawnX(double alpha) {
+        double x = this.rect.getUpperLeft().getX();
+        if (Math.abs(x - previousX) < this.rect.getWidth()) {
+            x = previousX + (x - previousX) * alpha;
+        }
+        return x;
+    }
+
+    /**
+     * Draws the paddle with its left edge at a given x-coordinate.
+     * @param d the DrawSurface to draw on
+     * @param x the x-coordinate of the left edge
+     */
+    private void draw(DrawSurface d, double x) {
         d.setColor(Color.CYAN);
-        d.fillRectangle((int) this.rect.getUpperLeft().getX(),
+        d.fillRectangle((int) x,
                 (int) this.rect.getUpperLeft().getY(),
                 (int) this.rect.getWidth(),
                 (int) this.rect.getHeight());
         d.setColor(Color.BLACK);
-        d.drawRectangle((int) this.rect.getUpperLeft().getX(),
+        d.drawRectangle((int) x,
                 (int) this.rect.getUpperLeft().getY(),
                 (int) this.rect.getWidth(),
                 (int) this.rect.getHeight());
@@ -100,14 +147,30 @@ public class Paddle implements Sprite, Collidable {
 
     /**
      * Handles ball collision with the paddle.
-     * @param collisionPoint the point of collision
+     * Hits on the top face are steered by region; hits on the sides and corners are reflected.
+     * @param hitter the ball that hit the paddle
+     * @param collision the collision details
      * @param currentVelocity the current velocity
      * @return updated velocity after the hit
      */
 
     @Override
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        int region = getRegion(collisionPoint.getX());
+    public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
+        return bounce(collision, currentVelocity);
+    }
+
+    /**
+     * Works out the velocity after a ball hits the paddle.
+     * @param collision the collision details
+     * @param currentVelocity the current velocity
+     * @return updated velocity after the hit
+     */
+    @Override
+    public Velocity bounce(CollisionInfo collision, Velocity currentVelocity) {
+        if (collision.normalY() > -1) {
+            return collision.reflect(currentVelocity);
+        }
+        int region = getRegion(collision.collisionPoint().getX());
         double speed = currentVelocity.getSpeed();
 
         switch (region) {
@@ -146,7 +209,7 @@ public class Paddle implements Sprite, Collidable {
      * @return the paddle's collision rectangle
      */
     public Rectangle getCollisionRectangle() {
-        return collisionRectangle;
+        return rect;
     }
 
     /**
@@ -154,7 +217,7 @@ public class Paddle implements Sprite, Collidable {
      * @param g the game to add to
      */
     public void addToGame(Game g) {
-        g.addCollidable(this);
+        g.addDynamicCollidable(this);
         g.addSprite(this);
         this.ge = g.getEnvironment();
     }
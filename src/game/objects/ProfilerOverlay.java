@@ -0,0 +1,127 @@
+package game.objects;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+import game.Game;
+import game.collision.Sprite;
+import game.display.DirtyRegion;
+import game.metrics.FrameProfiler;
+
+import java.awt.Color;
+
+/**
+ * ProfilerOverlay shows the frame profiler's percentiles for each phase, and the bytes allocated per
+ * frame, in the corner of the screen.
+ * Pressing the toggle key shows or hides it; showing it turns the profiler on. The text is made again
+ * every REFRESH_FRAMES profiled frames, so drawing it usually allocates nothing.
+ */
+public class ProfilerOverlay implements Sprite {
+    /**
+     * The key that shows and hides the overlay.
+     */
+    public static final String TOGGLE_KEY = "p";
+    private static final long REFRESH_FRAMES = 30;
+    private static final int X = 30;
+    private static final int TOP = 36;
+    private static final int LINE_HEIGHT = 14;
+    private static final int WIDTH = 420;
+
+    private final FrameProfiler profiler;
+    private final KeyboardSensor keyboard;
+    private final FrameProfiler.Phase[] phases = FrameProfiler.Phase.values();
+    private final String[] lines = new String[phases.length + 1];
+    private boolean visible;
+    private boolean keyDown;
+    private boolean changed;
+    private long refreshed = -REFRESH_FRAMES;
+
+    /**
+     * Constructor.
+     * @param profiler the profiler to show
+     * @param keyboard the keyboard the toggle key is read from, or null for an overlay that stays hidden
+     */
+    public ProfilerOverlay(FrameProfiler profiler, KeyboardSensor keyboard) {
+        if (profiler == null) {
+            throw new IllegalArgumentException("Profiler cannot be null");
+        }
+        this.profiler = profiler;
+        this.keyboard = keyboard;
+    }
+
+    /**
+     * Shows or hides the overlay. Showing it turns the profiler on.
+     * @param show true to show the overlay
+     */
+    public void setVisible(boolean show) {
+        if (show != visible) {
+            visible = show;
+            changed = true;
+            if (show) {
+                profiler.setEnabled(true);
+            }
+        }
+    }
+
+    /**
+     * Draws the percentiles of each phase, if the overlay is shown.
+     * @param d the surface to draw on
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        if (!visible) {
+            return;
+        }
+        d.setColor(Color.BLACK);
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] != null) {
+                d.drawText(X, TOP + i * LINE_HEIGHT, lines[i], 12);
+            }
+        }
+    }
+
+    /**
+     * Reports the overlay's area when it was shown, hidden or its text was made again.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return true
+     */
+    @Override
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        if (visible && profiler.getFrames() - refreshed >= REFRESH_FRAMES) {
+            refreshed = profiler.getFrames();
+            for (int i = 0; i < phases.length; i++) {
+                lines[i] = profiler.describe(phases[i]);
+            }
+            lines[phases.length] = profiler.describeAllocations();
+            changed = true;
+        }
+        if (changed) {
+            changed = false;
+            damage.add(X, TOP - LINE_HEIGHT, WIDTH, LINE_HEIGHT * (lines.length + 1));
+        }
+        return true;
+    }
+
+    /**
+     * Shows or hides the overlay when the toggle key goes down.
+     */
+    @Override
+    public void timePassed() {
+        if (keyboard == null) {
+            return;
+        }
+        boolean down = keyboard.isPressed(TOGGLE_KEY);
+        if (down && !keyDown) {
+            setVisible(!visible);
+        }
+        keyDown = down;
+    }
+
+    /**
+     * Adds the overlay to the game, drawn over everything added before it.
+     * @param g the game
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+    }
+}
@@ -1,6 +1,7 @@
 package game.objects;
 
 import game.collision.Sprite;
+import game.display.DirtyRegion;
 import biuoop.DrawSurface;
 import game.Game;
 import game.Counter;
@@ -12,6 +13,9 @@ import java.awt.Color;
  */
 public class ScoreIndecator implements Sprite {
     private Counter score;
+    private int reported = -1;
+    private int shown = -1;
+    private String text;
 
     /**
      * Constructs a ScoreIndecator with the given score counter.
@@ -26,9 +30,29 @@ public class ScoreIndecator implements Sprite {
      * @param d
      */
     public void drawOn(DrawSurface d) {
+        // The text is only made again when the score changed, so drawing a frame allocates nothing.
+        if (score.getValue() != shown) {
+            shown = score.getValue();
+            text = "Score: " + shown;
+        }
         d.setColor(Color.BLACK);
-        d.drawText(360, 18, "Score: " + score.getValue(), 16);
+        d.drawText(360, 18, text, 16);
     }
+    /**
+     * Reports the strip the score is written in when the score changed since the last report.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return true
+     */
+    @Override
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        if (score.getValue() != reported) {
+            reported = score.getValue();
+            damage.add(350, 0, 200, 24);
+        }
+        return true;
+    }
+
     /**
      * changes the shape after time passed.
      */
@@ -2,32 +2,76 @@ package game.sprites;
 
 import biuoop.DrawSurface;
 import game.collision.Sprite;
+import game.collision.StaticSprite;
+import game.display.DirtyRegion;
+import game.display.RenderCommandList;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+
 /**
  * A collection of sprites (game elements that can be drawn and updated).
+ * Sprites are drawn in the order they were added. Each sprite's slot is kept in a map,
+ * so removing one only clears its slot; the cleared slots are compacted away, keeping the
+ * order, in one pass at the end of notifyAllTimePassed() or on flush().
+ * Sprites added while the collection is being updated are held back until then too,
+ * so a tick never walks a list that changes under it.
+ * Static sprites are kept in a StaticLayer instead, which is drawn in the place of the first
+ * static sprite added.
  */
 public class SpriteCollection {
-    private java.util.List<Sprite> sprites = new java.util.ArrayList<>();
+    private List<Sprite> sprites = new ArrayList<>();
+    private Map<Sprite, Integer> slots = new IdentityHashMap<>();
+    private List<Sprite> pending = new ArrayList<>();
+    private int cleared;
+    private boolean updating;
+    private StaticLayer staticLayer = new StaticLayer();
 
     /**
-     * Adds a sprite to the collection.
+     * Adds a sprite to the collection. A sprite that is already in it is not added again.
+     * While the sprites are being updated, the sprite is added after the update.
      * @param s the sprite to add
      */
     public void addSprite(Sprite s) {
+        if (s == null) {
+            throw new IllegalArgumentException("Sprite cannot be null");
+        }
+        if (s instanceof StaticSprite) {
+            staticLayer.add((StaticSprite) s);
+            s = staticLayer;
+        }
+        if (slots.containsKey(s) || pending.contains(s)) {
+            return;
+        }
+        if (updating) {
+            pending.add(s);
+            return;
+        }
+        slots.put(s, sprites.size());
         sprites.add(s);
     }
 
     /**
      * Calls timePassed() on all sprites.
+     * A sprite removed during the update is not updated after its removal, and one added
+     * during it is first updated in the next call. The queued changes are applied at the end.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites);
-        for (Sprite s : spritesCopy) {
-            s.timePassed();
+        updating = true;
+        try {
+            int n = sprites.size();
+            for (int i = 0; i < n; i++) {
+                Sprite s = sprites.get(i);
+                if (s != null) {
+                    s.timePassed();
+                }
+            }
+        } finally {
+            updating = false;
         }
-
+        flush();
     }
 
     /**
@@ -35,16 +79,135 @@ public class SpriteCollection {
      * @param d the surface to draw on
      */
     public void drawAllOn(DrawSurface d) {
-        for (Sprite s : sprites) {
-            s.drawOn(d);
+        drawAllOn(d, 1);
+    }
+
+    /**
+     * Draws all sprites on the given DrawSurface, between their previous and current states.
+     * @param d the surface to draw on
+     * @param alpha how far the frame is past the previous tick, from 0 to 1
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (s != null) {
+                s.drawOn(d, alpha);
+            }
+        }
+    }
+
+    /**
+     * Records all sprites into a frame, between their previous and current states.
+     * Runs of batchable sprites are recorded as one batch, so their calls are sorted by color.
+     * @param frame the frame to record into
+     * @param alpha how far the frame is past the previous tick, from 0 to 1
+     */
+    public void recordAllOn(RenderCommandList frame, double alpha) {
+        boolean batching = false;
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (s == null) {
+                continue;
+            }
+            if (s.isBatchable() != batching) {
+                if (batching) {
+                    frame.endBatch();
+                } else {
+                    frame.beginBatch();
+                }
+                batching = !batching;
+            }
+            s.drawOn(frame, alpha);
+        }
+        if (batching) {
+            frame.endBatch();
         }
     }
 
+    /**
+     * Collects the damage of every sprite for the frame about to be drawn.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return true if every sprite reported its damage
+     */
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        boolean known = true;
+        for (int i = 0; i < sprites.size() && known; i++) {
+            Sprite s = sprites.get(i);
+            if (s != null) {
+                known = s.reportDamage(damage, alpha);
+            }
+        }
+        return known;
+    }
+
     /**
      * Removes a sprite from the collection.
+     * Its slot is only cleared; the list is compacted at the next flush.
      * @param s the sprite to remove
      */
     public void removeSprite(Sprite s) {
-        sprites.remove(s);
+        if (s instanceof StaticSprite) {
+            staticLayer.remove((StaticSprite) s);
+            return;
+        }
+        Integer slot = slots.remove(s);
+        if (slot == null) {
+            pending.remove(s);
+            return;
+        }
+        sprites.set(slot, null);
+        cleared++;
+    }
+
+    /**
+     * Applies the queued changes: closes the slots of removed sprites, keeping the drawing order,
+     * then adds the sprites that were added during an update.
+     * Does nothing while the sprites are being updated.
+     */
+    public void flush() {
+        if (updating) {
+            return;
+        }
+        if (cleared > 0) {
+            int kept = 0;
+            for (int i = 0; i < sprites.size(); i++) {
+                Sprite s = sprites.get(i);
+                if (s != null) {
+                    if (kept != i) {
+                        sprites.set(kept, s);
+                        slots.put(s, kept);
+                    }
+                    kept++;
+                }
+            }
+            sprites.subList(kept, sprites.size()).clear();
+            cleared = 0;
+        }
+        if (!pending.isEmpty()) {
+            for (Sprite s : pending) {
+                slots.put(s, sprites.size());
+                sprites.add(s);
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Returns the number of sprites in the collection, including the ones waiting to be added
+     * and each static sprite.
+     * @return the number of sprites
+     */
+    public int size() {
+        boolean layered = slots.containsKey(staticLayer) || pending.contains(staticLayer);
+        return slots.size() + pending.size() + staticLayer.size() - (layered ? 1 : 0);
+    }
+
+    /**
+     * Returns the layer the static sprites are drawn in.
+     * @return the static layer
+     */
+    public StaticLayer getStaticLayer() {
+        return staticLayer;
     }
 }
@@ -0,0 +1,265 @@
+package game.sprites;
+
+import Geomtry.Rectangle;
+import biuoop.DrawSurface;
+import game.Game;
+import game.collision.Sprite;
+import game.collision.StaticSprite;
+import game.display.DirtyRegion;
+import game.display.ImageDrawSurface;
+import game.display.RenderCommandList;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * StaticLayer draws static sprites into an off-screen image once and puts the image on the screen
+ * with a single drawImage call per frame, however many sprites it holds.
+ * When a sprite is added or removed, only the area it covers is drawn again, by clearing it and
+ * drawing the sprites that overlap it. The image is transparent where no sprite draws.
+ * When frames are always shown before the next is recorded, changes are drawn into the image itself.
+ * When a render thread shows frames recorded earlier, it may still be drawing the image, so the layer
+ * keeps a second image: a change is drawn into the second image, which first catches up on the areas
+ * of the change before, and the two swap. The second image is only drawn into once the render thread
+ * has taken a frame recorded after the swap, so it never draws an image that is changing. Until then
+ * the change waits, and is neither reported as damage nor drawn, so nothing is allocated; a frame
+ * drawn without reporting damage first gets the change in a fresh copy instead.
+ */
+public class StaticLayer implements Sprite {
+    private Set<StaticSprite> sprites = Collections.newSetFromMap(new LinkedHashMap<>());
+    private List<Rectangle> dirty = new ArrayList<>();
+    private StaticSprite[] order = new StaticSprite[0];
+    private boolean changed;
+    private BufferedImage image;
+    private RenderCommandList batch;
+    private List<Rectangle> batched = new ArrayList<>();
+    private long redraws;
+    private LongSupplier renderProgress;
+    private BufferedImage spare;
+    private List<Rectangle> spareMissing = new ArrayList<>();
+    private long spareSince;
+    private boolean deferred;
+
+    /**
+     * Adds a static sprite to the layer.
+     * @param s the sprite
+     */
+    public void add(StaticSprite s) {
+        if (!sprites.add(s)) {
+            return;
+        }
+        changed = true;
+        if (image != null) {
+            dirty.add(s.getBounds());
+        }
+    }
+
+    /**
+     * Removes a static sprite from the layer.
+     * @param s the sprite
+     * @return true if the sprite was in the layer
+     */
+    public boolean remove(StaticSprite s) {
+        if (!sprites.remove(s)) {
+            return false;
+        }
+        changed = true;
+        if (image != null) {
+            dirty.add(s.getBounds());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of sprites in the layer.
+     * @return the number of sprites
+     */
+    public int size() {
+        return sprites.size();
+    }
+
+    /**
+     * Tells the layer how far a render thread has got, or null when there is none and every frame is
+     * shown before the next is recorded. Then changes are drawn into the image in place.
+     * @param progress gives the sequence number of the newest frame the render thread has taken;
+     *                 it never draws a frame older than that again
+     */
+    public void setRenderProgress(LongSupplier progress) {
+        this.renderProgress = progress;
+        spare = null;
+        spareMissing.clear();
+    }
+
+    /**
+     * Returns how many times the image was drawn, whole or in part.
+     * @return the number of redraws
+     */
+    public long getRedraws() {
+        return redraws;
+    }
+
+    /**
+     * Lets every static sprite know that time passed.
+     * The sprites are walked in an array that is only rebuilt after the layer changed,
+     * so sprites may be added or removed meanwhile.
+     */
+    public void timePassed() {
+        if (changed) {
+            order = sprites.toArray(new StaticSprite[0]);
+            changed = false;
+        }
+        for (StaticSprite s : order) {
+            s.timePassed();
+        }
+    }
+
+    /**
+     * Reports the areas of the sprites added or removed since the image was last brought up to date,
+     * unless they have to wait for the render thread to let go of the spare image.
+     * @param damage the frame's damage
+     * @param alpha how far the frame is past the previous tick
+     * @return false before the image was first drawn, true after
+     */
+    @Override
+    public boolean reportDamage(DirtyRegion damage, double alpha) {
+        if (image == null) {
+            return false;
+        }
+        deferred = renderProgress != null && spare != null && renderProgress.getAsLong() < spareSince;
+        if (!deferred) {
+            for (Rectangle r : dirty) {
+                damage.add(r.getMinX(), r.getMinY(), r.getWidth(), r.getHeight());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the layer's image, bringing it up to date first.
+     * @param d the surface to draw on
+     */
+    public void drawOn(DrawSurface d) {
+        if (image == null || image.getWidth() != d.getWidth() || image.getHeight() != d.getHeight()) {
+            image = new BufferedImage(d.getWidth(), d.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            spare = null;
+            dirty.clear();
+            redraw(image, 0, 0, image.getWidth(), image.getHeight());
+        } else if (!dirty.isEmpty() && !deferred) {
+            if (renderProgress == null) {
+                redrawAll(image, dirty);
+            } else {
+                swap(d instanceof RenderCommandList ? ((RenderCommandList) d).getSequence() : -1);
+            }
+            dirty.clear();
+        }
+        deferred = false;
+        d.drawImage(0, 0, image);
+    }
+
+    /**
+     * Draws the changes into the spare image, or into a copy when the render thread may still be
+     * drawing the spare, and makes it the layer's image. The image it replaces becomes the spare.
+     * @param sequence the number of the frame being recorded, or -1 if it is not known
+     */
+    private void swap(long sequence) {
+        BufferedImage target;
+        if (spare != null && sequence >= 0 && renderProgress.getAsLong() >= spareSince) {
+            target = spare;
+            redrawAll(target, spareMissing);
+        } else {
+            target = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            target.setData(image.getRaster());
+        }
+        redrawAll(target, dirty);
+        // The old image misses exactly this change; the lists swap so nothing is allocated.
+        List<Rectangle> missing = spareMissing;
+        spareMissing = dirty;
+        dirty = missing;
+        spare = sequence >= 0 ? image : null;
+        spareSince = sequence;
+        image = target;
+    }
+
+    /**
+     * Draws areas of an image again.
+     * @param target the image
+     * @param areas the areas
+     */
+    private void redrawAll(BufferedImage target, List<Rectangle> areas) {
+        for (Rectangle r : areas) {
+            int x = (int) Math.floor(r.getMinX());
+            int y = (int) Math.floor(r.getMinY());
+            redraw(target, x, y, (int) Math.ceil(r.getMaxX()) - x, (int) Math.ceil(r.getMaxY()) - y);
+        }
+    }
+
+    /**
+     * Draws an area of an image again: clears it and draws the sprites that overlap it, clipped to it.
+     * The sprites are recorded in batches first, so all fills of a color are drawn together and the
+     * outlines after them, instead of changing color twice per sprite. A sprite that overlaps one
+     * already in the batch starts a new batch.
+     * @param target the image
+     * @param x the left edge of the area
+     * @param y the top edge of the area
+     * @param w the width of the area
+     * @param h the height of the area
+     */
+    private void redraw(BufferedImage target, int x, int y, int w, int h) {
+        if (batch == null) {
+            batch = new RenderCommandList(target.getWidth(), target.getHeight());
+        }
+        batch.clear();
+        batch.beginBatch();
+        batched.clear();
+        for (StaticSprite s : sprites) {
+            Rectangle b = s.getBounds();
+            if (b.getMinX() < x + w && b.getMaxX() > x && b.getMinY() < y + h && b.getMaxY() > y) {
+                if (overlapsBatched(b)) {
+                    batch.endBatch();
+                    batch.beginBatch();
+                    batched.clear();
+                }
+                batched.add(b);
+                s.drawOn(batch);
+            }
+        }
+        batch.endBatch();
+        ImageDrawSurface surface = new ImageDrawSurface(target);
+        surface.clear(x, y, w, h);
+        surface.clip(x, y, w, h);
+        batch.replay(surface);
+        surface.dispose();
+        redraws++;
+    }
+
+    /**
+     * Checks if an area overlaps one of the sprites in the current batch by more than an outline.
+     * Sprites that only share an outline, like blocks next to each other, look the same when all
+     * fills are drawn before all outlines; sprites that overlap more have to be drawn in order.
+     * @param b the area
+     * @return true if the area overlaps a batched sprite by more than one pixel both ways
+     */
+    private boolean overlapsBatched(Rectangle b) {
+        for (Rectangle r : batched) {
+            double overlapX = Math.min(r.getMaxX(), b.getMaxX()) - Math.max(r.getMinX(), b.getMinX());
+            double overlapY = Math.min(r.getMaxY(), b.getMaxY()) - Math.max(r.getMinY(), b.getMinY());
+            if (overlapX > 1 && overlapY > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the layer to the game as a sprite.
+     * @param g the game
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+    }
+}